@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all the everest benchmarks with the GC profiler, and writes a JSON report.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.ow2.chameleon.everest.benchmarks.BaselineRunner [report] [include]}, where
+ * {@code report} is the report file ({@code everest-baseline.json} by default) and {@code include} a regular
+ * expression selecting the benchmarks to run (all by default).
+ * </p>
+ */
+public final class BaselineRunner {
+
+    private BaselineRunner() {
+        // Main class
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String report = args.length > 0 ? args[0] : "everest-baseline.json";
+        String include = args.length > 1 ? args[1] : "org\\.ow2\\.chameleon\\.everest\\..*";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(report)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ow2.chameleon.everest.filters.ResourceFilters;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.query.ParseException;
+import org.ow2.chameleon.everest.query.QueryFilter;
+import org.ow2.chameleon.everest.services.IllegalResourceException;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the evaluation of composite {@link ResourceFilters} and the parsing of {@link QueryFilter} queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final String QUERY = "{Name:{$in:[\"room1\",\"room2\"]}}";
+
+    private List<Resource> resources;
+    private ResourceFilter filter;
+    private ResourceFilter query;
+
+    @Setup
+    public void setUp() throws IllegalResourceException, ParseException {
+        resources = new ArrayList<Resource>();
+        for (int i = 0; i < 100; i++) {
+            resources.add(new DefaultResource.Builder()
+                    .fromPath("/bench/room" + i)
+                    .with(new ImmutableResourceMetadata.Builder()
+                            .set("Name", "room" + i)
+                            .set("Surface", (double) i)
+                            .build())
+                    .build());
+        }
+        filter = ResourceFilters.and(
+                ResourceFilters.or(
+                        ResourceFilters.equalsTo("Name", "room1"),
+                        ResourceFilters.regExp("Name", "room[0-9]5")),
+                ResourceFilters.greaterThan("Surface", 10),
+                ResourceFilters.not(ResourceFilters.empty("Name")));
+        query = new QueryFilter(QUERY, null).input();
+    }
+
+    @Benchmark
+    public int filter() {
+        return count(filter);
+    }
+
+    @Benchmark
+    public int query() {
+        return count(query);
+    }
+
+    @Benchmark
+    public ResourceFilter parse() throws ParseException {
+        return new QueryFilter(QUERY, null).input();
+    }
+
+    private int count(ResourceFilter filter) {
+        int count = 0;
+        for (Resource resource : resources) {
+            if (filter.accept(resource)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the creation of {@link ImmutableResourceMetadata}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Param({"5", "50"})
+    private int size;
+
+    private Map<String, Object> map;
+    private ResourceMetadata metadata;
+
+    @Setup
+    public void setUp() {
+        map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < size; i++) {
+            map.put("key-" + i, i % 2 == 0 ? "value-" + i : Integer.valueOf(i));
+        }
+        metadata = ImmutableResourceMetadata.of(map);
+    }
+
+    @Benchmark
+    public ResourceMetadata ofMap() {
+        return ImmutableResourceMetadata.of(map);
+    }
+
+    @Benchmark
+    public ResourceMetadata ofMetadata() {
+        return ImmutableResourceMetadata.of(metadata);
+    }
+
+    @Benchmark
+    public ResourceMetadata builder() {
+        return new ImmutableResourceMetadata.Builder(metadata).set("extended", true).build();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ow2.chameleon.everest.services.Path;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link Path} operations used at every level of the request routing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+    private String string = "/osgi/bundles/42/services/17";
+    private Path path;
+    private Path prefix;
+    private Path suffix;
+
+    @Setup
+    public void setUp() {
+        path = Path.from(string);
+        prefix = Path.from("/osgi/bundles");
+        suffix = Path.from("/42/services/17");
+    }
+
+    @Benchmark
+    public Path from() {
+        return Path.from(string);
+    }
+
+    @Benchmark
+    public Path subtract() {
+        return path.subtract(prefix);
+    }
+
+    @Benchmark
+    public Path add() {
+        return prefix.add(suffix);
+    }
+
+    @Benchmark
+    public boolean isAncestorOf() {
+        return prefix.isAncestorOf(path);
+    }
+
+    @Benchmark
+    public boolean isDescendantOf() {
+        return path.isDescendantOf(prefix);
+    }
+}
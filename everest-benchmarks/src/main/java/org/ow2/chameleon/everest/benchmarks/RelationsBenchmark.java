@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ow2.chameleon.everest.services.Relation;
+import org.ow2.chameleon.everest.services.Resource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link org.ow2.chameleon.everest.impl.DefaultResource#getRelations()} on resources with many children.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelationsBenchmark {
+
+    @Param({"10", "100"})
+    private int width;
+
+    private Resource resource;
+
+    @Setup
+    public void setUp() {
+        resource = Trees.build("/bench", 1, width);
+    }
+
+    @Benchmark
+    public List<Relation> getRelations() {
+        return resource.getRelations();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ow2.chameleon.everest.core.Everest;
+import org.ow2.chameleon.everest.impl.DefaultRequest;
+import org.ow2.chameleon.everest.services.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the routing of a read request to the deepest node of deep and wide synthetic trees, both directly through
+ * {@link org.ow2.chameleon.everest.impl.DefaultResource#process(Request)} and through {@link Everest#process(Request)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"2", "8"})
+    private int depth;
+
+    @Param({"10", "100"})
+    private int width;
+
+    private Resource root;
+    private Everest everest;
+    private Request request;
+
+    @Setup
+    public void setUp() {
+        root = Trees.build("/bench", depth, width);
+        everest = new Everest();
+        everest.bindRootResource(root);
+        request = new DefaultRequest(Action.READ, Trees.deepest(root), null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        everest.stop();
+    }
+
+    @Benchmark
+    public Resource process() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        return root.process(request);
+    }
+
+    @Benchmark
+    public Resource everest() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        return everest.process(request);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.benchmarks;
+
+import org.ow2.chameleon.everest.impl.DefaultReadOnlyResource;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds synthetic resource trees.
+ */
+final class Trees {
+
+    private Trees() {
+        // Utility class
+    }
+
+    /**
+     * Builds a tree of the given depth, where each node has {@code width} children. Only the last child of each node
+     * has children, so the tree has {@code depth * width} nodes, and reaching the deepest node requires scanning all
+     * the children of every level.
+     *
+     * @param root  the path of the root
+     * @param depth the depth of the tree
+     * @param width the number of children of each inner node
+     * @return the root of the tree
+     */
+    static Node build(String root, int depth, int width) {
+        Node node = new Node(Path.from(root));
+        Node result = node;
+        for (int level = 0; level < depth; level++) {
+            Node last = null;
+            for (int i = 0; i < width; i++) {
+                last = new Node(node.getPath().addElements("n" + i));
+                node.children.add(last);
+            }
+            node = last;
+        }
+        return result;
+    }
+
+    /**
+     * @param root a tree built by {@link #build(String, int, int)}
+     * @return the path of the deepest node of the tree
+     */
+    static Path deepest(Resource root) {
+        Resource node = root;
+        while (!node.getResources().isEmpty()) {
+            List<Resource> children = node.getResources();
+            node = children.get(children.size() - 1);
+        }
+        return node.getPath();
+    }
+
+    /**
+     * A read-only node of a synthetic tree.
+     */
+    static final class Node extends DefaultReadOnlyResource {
+
+        private final List<Resource> children = new ArrayList<Resource>();
+
+        Node(Path path) {
+            super(path);
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            return children;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.servlet;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+import org.ow2.chameleon.everest.impl.DefaultReadOnlyResource;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.IllegalResourceException;
+import org.ow2.chameleon.everest.services.Resource;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the JSON serialization of resources by {@link EverestServlet#toJSON(HttpServletRequest, Resource)}.
+ * <p>
+ * This benchmark lives in the servlet package to access the protected serialization method.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletBenchmark {
+
+    @Param({"10", "100"})
+    private int children;
+
+    private EverestServlet servlet;
+    private HttpServletRequest request;
+    private Resource resource;
+
+    @Setup
+    public void setUp() throws IllegalResourceException {
+        servlet = new EverestServlet();
+        request = stubRequest();
+        ImmutableResourceMetadata.Builder metadata = new ImmutableResourceMetadata.Builder();
+        for (int i = 0; i < 10; i++) {
+            metadata.set("key-" + i, i % 2 == 0 ? "value-" + i : Integer.valueOf(i));
+        }
+        DefaultResource.Builder builder = new DefaultResource.Builder()
+                .fromPath("/bench")
+                .with(metadata.build());
+        for (int i = 0; i < children; i++) {
+            builder.with(new DefaultReadOnlyResource("/bench/child-" + i));
+        }
+        resource = builder.build();
+    }
+
+    @Benchmark
+    public ObjectNode toJSON() throws IOException {
+        return servlet.toJSON(request, resource);
+    }
+
+    /**
+     * @return a HTTP request answering the calls made during the serialization
+     */
+    private static HttpServletRequest stubRequest() {
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletBenchmark.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getScheme")) {
+                    return "http";
+                } else if (name.equals("getServerName")) {
+                    return "localhost";
+                } else if (name.equals("getServerPort")) {
+                    return 8080;
+                } else if (method.getReturnType().equals(boolean.class)) {
+                    return false;
+                } else if (method.getReturnType().equals(int.class)) {
+                    return 0;
+                } else if (method.getReturnType().equals(long.class)) {
+                    return 0L;
+                }
+                return null;
+            }
+        });
+    }
+}
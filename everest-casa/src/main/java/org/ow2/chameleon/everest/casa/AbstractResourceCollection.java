@@ -22,7 +22,6 @@ import org.ow2.chameleon.everest.services.Path;
 import org.ow2.chameleon.everest.services.Relation;
 import org.ow2.chameleon.everest.services.Resource;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,20 +43,15 @@ public abstract class AbstractResourceCollection extends DefaultReadOnlyResource
     }
 
     /**
-     * Extracts the direct children and add a {@literal READ} relation to them.
-     *
-     * @return list of relations
+     * Adds a {@literal READ} relation to each direct child, besides the default child relation.
      */
-    public List<Relation> getRelations() {
-        List<Relation> relations = new ArrayList<Relation>();
-        relations.addAll(super.getRelations());
-        for (Resource resource : getResources()) {
-            int size = getCanonicalPath().getCount();
-            String name = resource.getCanonicalPath().getElements()[size];
-            relations.add(new DefaultRelation(resource.getCanonicalPath(), Action.READ, getCanonicalPath().getLast() + ":" + name,
-                    "Get " + name));
-        }
-        return relations;
+    @Override
+    protected void addChildRelations(Resource child, List<Relation> relations) {
+        super.addChildRelations(child, relations);
+        int size = getCanonicalPath().getCount();
+        String name = child.getCanonicalPath().getElement(size);
+        relations.add(new DefaultRelation(child.getCanonicalPath(), Action.READ, getCanonicalPath().getLast() + ":" + name,
+                "Get " + name));
     }
 
 
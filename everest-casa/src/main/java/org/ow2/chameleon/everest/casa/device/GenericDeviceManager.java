@@ -113,6 +113,7 @@ public class GenericDeviceManager extends AbstractResourceCollection {
             GenericDevice newGenericDevice = new GenericDevice(newserialNumber);
             resource = new GenericDeviceResource(newGenericDevice, this);
             m_genericDeviceResourcesMap.put(newGenericDevice.DEVICE_SERIAL_NUMBER, resource);
+            invalidateRelations();
         }
 
         return resource;
@@ -100,6 +100,7 @@ public class ZoneManager extends AbstractResourceCollection {
                     Zone newZone = new Zone(newMap.get(key).toString());
                     resource = new ZoneResource(newZone, this);
                     m_zoneResourcesMap.put(newZone.name, resource);
+                    invalidateRelations();
                 }
 
             }
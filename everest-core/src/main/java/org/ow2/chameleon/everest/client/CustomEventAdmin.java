@@ -3,10 +3,12 @@ package org.ow2.chameleon.everest.client;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
+import org.ow2.chameleon.everest.filters.QueryPlanner;
 import org.ow2.chameleon.everest.filters.ResourceFilters;
-import org.ow2.chameleon.everest.query.QueryFilter;
-import org.ow2.chameleon.everest.services.Resource;
-import org.ow2.chameleon.everest.services.ResourceFilter;
+import org.ow2.chameleon.everest.impl.DefaultRequest;
+import org.ow2.chameleon.everest.impl.ResourceIterator;
+import org.ow2.chameleon.everest.query.QueryPlans;
+import org.ow2.chameleon.everest.services.*;
 
 import java.util.*;
 
@@ -31,18 +33,29 @@ public class CustomEventAdmin  {
 
     private ListResourceContainer m_lastRequestResult;
 
+    /**
+     * The resources matching the query, by canonical path.
+     */
+    private final Map<Path, Resource> m_matches = new LinkedHashMap<Path, Resource>();
+
+    /**
+     * Whether the filter only depends on the resource it evaluates, so events can be processed by only evaluating
+     * the changed resource.
+     */
+    private final boolean m_incremental;
+
     public CustomEventAdmin(BundleContext context,EverestListener everestListener , String request,EverestClient client) {
         this.m_context = context;
         this.m_everestListener = everestListener;
         this.m_request = request;
         m_parentClient = client;
         try{
-            QueryFilter queryFilter = new QueryFilter(request,EverestClient.m_everest);
-            m_currentFilter = queryFilter.input();
+            m_currentFilter = QueryPlans.compile(request, EverestClient.m_everest);
         }catch (Exception e){
             e.printStackTrace();
             m_currentFilter = ResourceFilters.none();
         }
+        m_incremental = QueryPlanner.isLocal(m_currentFilter);
 
         List<Resource> resourceList = m_parentClient.getAllResource();
         List<ResourceContainer> resourceContainers = new ArrayList<ResourceContainer>();
@@ -51,9 +64,110 @@ public class CustomEventAdmin  {
         }
         ListResourceContainer listResourceContainer = new ListResourceContainer(resourceContainers);
         m_lastRequestResult = listResourceContainer.filter(m_currentFilter);
+        List<Resource> result = m_lastRequestResult.retrieve();
+        if (result != null) {
+            for (Resource resource : result) {
+                m_matches.put(resource.getCanonicalPath(), resource);
+            }
+        }
+    }
+
+    /**
+     * Processes a resource event.
+     * If the filter only depends on the evaluated resource, only the subtree of the changed resource is read and
+     * evaluated; otherwise the whole tree is filtered again.
+     *
+     * @param type the type of the event, {@literal null} if unknown
+     * @param path the canonical path of the changed resource, {@literal null} if unknown
+     */
+    protected synchronized void onEvent(ResourceEvent type, Path path) {
+        if (!m_incremental || type == null || path == null) {
+            CreateEvent();
+            return;
+        }
+        List<Resource> added = new ArrayList<Resource>();
+        List<Resource> removed = new ArrayList<Resource>();
+        if (type == ResourceEvent.DELETED) {
+            // The children of the deleted resource are gone too.
+            Iterator<Map.Entry<Path, Resource>> iterator = m_matches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Resource> entry = iterator.next();
+                if (entry.getKey().equals(path) || entry.getKey().isDescendantOf(path)) {
+                    removed.add(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        } else {
+            // The children of a created or updated resource may not post their own events.
+            Set<Path> visited = new HashSet<Path>();
+            Resource resource = readResource(path);
+            if (resource != null) {
+                Iterator<Resource> subtree = new ResourceIterator(resource);
+                while (subtree.hasNext()) {
+                    Resource current = subtree.next();
+                    visited.add(current.getCanonicalPath());
+                    evaluate(current.getCanonicalPath(), current, added, removed);
+                }
+            }
+            // The matches under the path that are not in the tree anymore.
+            Iterator<Map.Entry<Path, Resource>> iterator = m_matches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Resource> entry = iterator.next();
+                if ((entry.getKey().equals(path) || entry.getKey().isDescendantOf(path))
+                        && !visited.contains(entry.getKey())) {
+                    removed.add(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        notifyChanges(added, removed);
+    }
+
+    /**
+     * Evaluates the filter on a resource, and updates the matches.
+     *
+     * @param path     the canonical path of the resource
+     * @param resource the resource, {@literal null} if it does not exist
+     */
+    private void evaluate(Path path, Resource resource, List<Resource> added, List<Resource> removed) {
+        boolean matches = resource != null && m_currentFilter.accept(resource);
+        Resource previous = matches ? m_matches.put(path, resource) : m_matches.remove(path);
+        if (matches && previous == null) {
+            added.add(resource);
+        } else if (!matches && previous != null) {
+            removed.add(previous);
+        }
+    }
+
+    private Resource readResource(Path path) {
+        try {
+            return EverestClient.m_everest.process(new DefaultRequest(Action.READ, path, null));
+        } catch (ResourceNotFoundException e) {
+            return null;
+        } catch (IllegalActionOnResourceException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the changes of the result to the listener, if any.
+     */
+    private void notifyChanges(List<Resource> added, List<Resource> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        List<ResourceContainer> containers = new ArrayList<ResourceContainer>();
+        for (Resource resource : m_matches.values()) {
+            containers.add(new ResourceContainer(resource));
+        }
+        m_lastRequestResult = new ListResourceContainer(containers);
+        if (m_everestListener instanceof IncrementalEverestListener) {
+            ((IncrementalEverestListener) m_everestListener).matchesChanged(added, removed);
+        }
+        m_everestListener.getNewResult(m_lastRequestResult.retrieve());
     }
 
-    protected void CreateEvent() {
+    protected synchronized void CreateEvent() {
         List<Resource> resourceList = m_parentClient.getAllResource();
         List<ResourceContainer> resourceContainers = new ArrayList<ResourceContainer>();
         for(Resource resource : resourceList){
@@ -99,27 +213,33 @@ public class CustomEventAdmin  {
     }
 
 
-    public void compareResult(ListResourceContainer resultRequest) {
-        if((resultRequest.retrieve() == null ) && (m_lastRequestResult.retrieve() != null )){
-            m_everestListener.getNewResult(null);
-            m_lastRequestResult = resultRequest;
-
-        }else if((resultRequest.retrieve() == null) && (m_lastRequestResult.retrieve() == null )){
-
-        }else if((resultRequest.retrieve() != null) && (m_lastRequestResult.retrieve() == null)){
-            m_everestListener.getNewResult(resultRequest.retrieve());
-            m_lastRequestResult = resultRequest;
-
-        }else{
-
-            if(!m_lastRequestResult.equals(resultRequest)){
-                m_lastRequestResult = resultRequest;
-                m_everestListener.getNewResult(resultRequest.retrieve());
-
-            }else{
-                m_lastRequestResult = resultRequest;
-
+    /**
+     * Replaces the result by the given one, notifying the listener if it changed.
+     *
+     * @param resultRequest the new result
+     */
+    public synchronized void compareResult(ListResourceContainer resultRequest) {
+        Map<Path, Resource> next = new LinkedHashMap<Path, Resource>();
+        List<Resource> result = resultRequest.retrieve();
+        if (result != null) {
+            for (Resource resource : result) {
+                next.put(resource.getCanonicalPath(), resource);
+            }
+        }
+        List<Resource> added = new ArrayList<Resource>();
+        List<Resource> removed = new ArrayList<Resource>();
+        for (Map.Entry<Path, Resource> entry : next.entrySet()) {
+            if (!m_matches.containsKey(entry.getKey())) {
+                added.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<Path, Resource> entry : m_matches.entrySet()) {
+            if (!next.containsKey(entry.getKey())) {
+                removed.add(entry.getValue());
             }
         }
+        m_matches.clear();
+        m_matches.putAll(next);
+        notifyChanges(added, removed);
     }
 }
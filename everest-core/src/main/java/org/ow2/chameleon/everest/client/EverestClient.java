@@ -325,19 +325,22 @@ public class EverestClient extends ResourceContainer implements ServiceTrackerCu
 
         if ((m_listeners != null)&&(!m_listeners.isEmpty())){
             Object eventType = event.getProperty("eventType");
+            Object canonicalPath = event.getProperty("canonicalPath");
             System.out.println("Event !!!");
-            for(EverestListener currentListener : m_listeners.keySet()){
-                if (ResourceEvent.CREATED.toString().equals(eventType)) {
-                    m_listeners.get(currentListener).CreateEvent();
-
-                } else if (ResourceEvent.DELETED.toString().equals(eventType)) {
-                    m_listeners.get(currentListener).DeleteEvent();
-
-                } else if (ResourceEvent.UPDATED.toString().equals(eventType)) {
-                    m_listeners.get(currentListener).UpdateEvent();
-
+            ResourceEvent type = null;
+            for (ResourceEvent value : ResourceEvent.values()) {
+                if (value.toString().equals(eventType)) {
+                    type = value;
                 }
             }
+            if (type == null) {
+                return;
+            }
+            // Only the changed resource is evaluated against each subscription, when possible.
+            Path path = canonicalPath == null ? null : Path.from(canonicalPath.toString());
+            for(EverestListener currentListener : m_listeners.keySet()){
+                m_listeners.get(currentListener).onEvent(type, path);
+            }
         }
     }
 
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.client;
+
+import org.ow2.chameleon.everest.services.Resource;
+
+import java.util.List;
+
+/**
+ * A subscription listener also notified of the changes of the result.
+ * <p>
+ * When the result of the query changes, {@link #matchesChanged(List, List)} is called with the resources that
+ * entered and left the result, then {@link #getNewResult(List)} with the whole new result.
+ * </p>
+ */
+public interface IncrementalEverestListener extends EverestListener {
+
+    /**
+     * @param added   the resources now matching the query, never {@literal null}
+     * @param removed the resources not matching the query anymore, never {@literal null}
+     */
+    public void matchesChanged(List<Resource> added, List<Resource> removed);
+
+}
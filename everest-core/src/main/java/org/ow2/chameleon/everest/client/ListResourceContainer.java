@@ -20,6 +20,7 @@ package org.ow2.chameleon.everest.client;/*
  * 
  */
 
+import org.ow2.chameleon.everest.core.IndexedQueries;
 import org.ow2.chameleon.everest.services.*;
 
 import java.util.ArrayList;
@@ -408,22 +409,26 @@ public class ListResourceContainer {
     }
 
 
+    /**
+     * Keeps the resources accepted by the given filter.
+     * If the metadata index is enabled and can answer the filter, the indexed resources it rejects are dropped
+     * without evaluating the filter, so resources changing without posting an event may be missed. Large lists are
+     * evaluated in parallel, see {@link IndexedQueries}.
+     */
     public synchronized ListResourceContainer filter(ResourceFilter filter) {
         if (m_resourcesContainer == null || m_resourcesContainer.isEmpty()) {
             return this;
         }
 
-        List<ResourceContainer> returnResources = new ArrayList<ResourceContainer>();
-
+        List<Resource> resources = new ArrayList<Resource>();
         for (ResourceContainer current : m_resourcesContainer) {
-            ResourceContainer temp = current.filter(filter);
-            if (!(temp.m_resource == null)) {
-                ResourceContainer temp1;
-                temp1 = new ResourceContainer(temp.m_resource);
-                returnResources.add(temp1);
-            }
+            resources.add(current.m_resource);
         }
 
+        List<ResourceContainer> returnResources = new ArrayList<ResourceContainer>();
+        for (Resource resource : IndexedQueries.filter(resources, filter)) {
+            returnResources.add(new ResourceContainer(resource));
+        }
 
         m_resourcesContainer = returnResources;
         return this;
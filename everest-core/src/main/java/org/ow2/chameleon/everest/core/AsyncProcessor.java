@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the asynchronous requests of everest.
+ * <p>
+ * Requests are run by the executor set with {@link #setExecutor(ExecutorService)}, or by a default pool of daemon
+ * threads created on first use. Requests with a timeout are cancelled (and their thread interrupted) once the timeout
+ * expires.
+ * </p>
+ */
+final class AsyncProcessor {
+
+    /**
+     * The system property setting the size of the default pool, {@code 2 * number of processors} by default.
+     */
+    static final String THREADS = "everest.processing.async.threads";
+
+    /**
+     * The executor set by the user, {@code null} to use the default pool.
+     */
+    private volatile ExecutorService executor;
+
+    /**
+     * The default pool, lazily created.
+     */
+    private ExecutorService defaultExecutor;
+
+    /**
+     * The scheduler cancelling the requests that time out, lazily created.
+     */
+    private ScheduledExecutorService canceller;
+
+    /**
+     * Sets the executor running the asynchronous requests.
+     *
+     * @param executor the executor, {@code null} to use the default pool. The caller remains responsible for shutting
+     *                 it down.
+     */
+    void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Submits a request.
+     *
+     * @param task    the task processing the request
+     * @param timeout the maximum time to process the request, no timeout if {@code <= 0}
+     * @param unit    the unit of {@code timeout}
+     * @return the future result of the request
+     * @throws RejectedExecutionException if the executor does not accept the request
+     */
+    <T> Future<T> submit(Callable<T> task, long timeout, TimeUnit unit) {
+        final AsyncTask<T> future = new AsyncTask<T>(task);
+        getExecutor().execute(future);
+        if (timeout > 0 && !future.isDone()) {
+            future.timeout = getCanceller().schedule(new Runnable() {
+                public void run() {
+                    future.cancel(true);
+                }
+            }, timeout, unit);
+        }
+        return future;
+    }
+
+    /**
+     * Shuts down the default pool and the canceller. The running requests are interrupted.
+     */
+    synchronized void shutdown() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdownNow();
+            defaultExecutor = null;
+        }
+        if (canceller != null) {
+            canceller.shutdownNow();
+            canceller = null;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        ExecutorService custom = executor;
+        if (custom != null) {
+            return custom;
+        }
+        synchronized (this) {
+            if (defaultExecutor == null) {
+                int threads = Integer.getInteger(THREADS, 2 * Runtime.getRuntime().availableProcessors());
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("everest-async-"));
+                pool.allowCoreThreadTimeOut(true);
+                defaultExecutor = pool;
+            }
+            return defaultExecutor;
+        }
+    }
+
+    private synchronized ScheduledExecutorService getCanceller() {
+        if (canceller == null) {
+            canceller = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("everest-async-timeout-"));
+        }
+        return canceller;
+    }
+
+    /**
+     * A request future, cancelling its pending timeout when done.
+     */
+    private static final class AsyncTask<T> extends FutureTask<T> {
+
+        private volatile Future<?> timeout;
+
+        private AsyncTask(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void done() {
+            Future<?> pending = timeout;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so pending requests never prevent the JVM from exiting.
+     */
+    static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges the resource events posted on the same resource within a time window.
+ * <p>
+ * The first event on a resource opens a window; the events received on the same resource (i.e. with the same canonical
+ * path) until the window closes are merged
+ * into it: repeated updates become a single event carrying the latest state and sequence number, and a resource
+ * created then deleted within the window produces no event at all. When the window closes, the merged events are
+ * posted in the order of their first occurrence.
+ * </p>
+ * <p>
+ * Coalescing is disabled when the window is {@literal 0}: events are then posted immediately.
+ * </p>
+ */
+public final class EventCoalescer {
+
+    /**
+     * Posts the merged events.
+     */
+    interface Sink {
+        void post(ResourceEvent type, Resource resource, String topic, long sequence);
+    }
+
+    private final Sink sink;
+
+    /**
+     * Serializes the flushes, so the events of successive windows are posted in order.
+     */
+    private final Object flushLock = new Object();
+
+    private volatile long window;
+
+    /**
+     * The pending events, by canonical path, in order of first occurrence. Topics cannot be used as keys: distinct
+     * paths may share the same topic.
+     */
+    private Map<Path, Pending> pending = new LinkedHashMap<Path, Pending>();
+
+    /**
+     * The scheduler closing the windows, lazily created.
+     */
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    /**
+     * @param sink   the sink posting the events
+     * @param window the coalescing window, in milliseconds, {@literal 0} to disable coalescing
+     */
+    EventCoalescer(Sink sink, long window) {
+        this.sink = sink;
+        this.window = Math.max(0, window);
+    }
+
+    /**
+     * @return {@literal true} if the events are coalesced
+     */
+    boolean isEnabled() {
+        return window > 0;
+    }
+
+    /**
+     * @return the coalescing window, in milliseconds
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the coalescing window. Disabling coalescing flushes the pending events.
+     *
+     * @param window the window, in milliseconds, {@literal 0} to disable coalescing
+     */
+    void setWindow(long window) {
+        this.window = Math.max(0, window);
+        if (this.window == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Adds an event, merging it with the pending event on the same resource if any.
+     *
+     * @param type     the type of the event
+     * @param resource the resource
+     * @param topic    the topic of the event
+     * @param sequence the sequence number of the event in the journal
+     */
+    void offer(ResourceEvent type, Resource resource, String topic, long sequence) {
+        received.incrementAndGet();
+        Path path = resource.getCanonicalPath();
+        synchronized (this) {
+            Pending event = pending.get(path);
+            if (event == null) {
+                if (pending.isEmpty()) {
+                    schedule();
+                }
+                pending.put(path, new Pending(type, resource, topic, sequence));
+                return;
+            }
+            ResourceEvent merged = merge(event.type, type);
+            if (merged == null) {
+                pending.remove(path);
+                collapsed.incrementAndGet();
+            } else {
+                event.type = merged;
+                event.resource = resource;
+                event.topic = topic;
+                event.sequence = sequence;
+                coalesced.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the type of the event replacing the given events, {@literal null} if they cancel each other
+     */
+    static ResourceEvent merge(ResourceEvent first, ResourceEvent next) {
+        switch (first) {
+            case CREATED:
+                // The resource did not exist before the window.
+                return next == ResourceEvent.DELETED ? null : ResourceEvent.CREATED;
+            case DELETED:
+                // Deleted then re-created: the resource existed before and after the window.
+                return next == ResourceEvent.DELETED ? ResourceEvent.DELETED : ResourceEvent.UPDATED;
+            default:
+                return next == ResourceEvent.DELETED ? ResourceEvent.DELETED : ResourceEvent.UPDATED;
+        }
+    }
+
+    /**
+     * Posts the pending events now.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            List<Pending> events;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                events = new ArrayList<Pending>(pending.values());
+                pending = new LinkedHashMap<Path, Pending>();
+            }
+            for (Pending event : events) {
+                sink.post(event.type, event.resource, event.topic, event.sequence);
+                posted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Posts the pending events and stops the scheduler.
+     */
+    void shutdown() {
+        flush();
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    private void schedule() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new AsyncProcessor.DaemonThreadFactory("everest-events-"));
+        }
+        scheduler.schedule(new Runnable() {
+            public void run() {
+                flush();
+            }
+        }, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of events received
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return the number of events actually posted
+     */
+    public long getPosted() {
+        return posted.get();
+    }
+
+    /**
+     * @return the number of events merged into a pending event
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of creations cancelled by a deletion within the same window
+     */
+    public long getCollapsed() {
+        return collapsed.get();
+    }
+
+    /**
+     * @return the number of events waiting for their window to close
+     */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * A pending event.
+     */
+    private static final class Pending {
+
+        private ResourceEvent type;
+        private Resource resource;
+        private String topic;
+        private long sequence;
+
+        private Pending(ResourceEvent type, Resource resource, String topic, long sequence) {
+            this.type = type;
+            this.resource = resource;
+            this.topic = topic;
+            this.sequence = sequence;
+        }
+    }
+
+}
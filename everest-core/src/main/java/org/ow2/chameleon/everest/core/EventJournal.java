@@ -0,0 +1,275 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.ResourceEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The journal of the resource events, letting clients catch up with the events they missed.
+ * <p>
+ * Each event gets a sequence number, increasing by one with each event, starting at {@literal 1}. The events are
+ * stored in a fixed-size ring buffer allocated outside of the heap: when it is full, the oldest events are dropped.
+ * A client reading from a sequence number older than the oldest retained event has to re-read the resources.
+ * </p>
+ * <p>
+ * Each record holds the sequence number (8 bytes), the event type (1 byte), the length of the path (4 bytes) and the
+ * UTF-8 canonical path of the resource. Records may wrap around the end of the buffer.
+ * </p>
+ * <p>
+ * The offset of every {@value #CHECKPOINT_INTERVAL}th record is kept in a sparse index, so reads seek close to the
+ * requested sequence number instead of scanning the ring from its oldest record. Reads only copy the raw records
+ * under the lock; they are decoded outside of it, so polling clients barely delay the posting of events.
+ * </p>
+ */
+public final class EventJournal {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int HEADER = 8 + 1 + 4;
+
+    private static final ResourceEvent[] TYPES = ResourceEvent.values();
+
+    /**
+     * The number of records between two checkpoints of the sparse index.
+     */
+    static final int CHECKPOINT_INTERVAL = 64;
+
+    private final ByteBuffer buffer;
+
+    private final int capacity;
+
+    /**
+     * The header of the record being read or written.
+     */
+    private final byte[] header = new byte[HEADER];
+
+    /**
+     * The offsets of the checkpoint records, i.e. the records whose sequence number minus one is a multiple of
+     * {@link #CHECKPOINT_INTERVAL}. Large enough to hold the checkpoints of all the records the ring can retain.
+     */
+    private final long[] checkpoints;
+
+    /**
+     * The byte offsets of the oldest record and of the next record, growing forever.
+     */
+    private long tail, head;
+
+    /**
+     * The sequence number of the oldest retained record.
+     */
+    private long first = 1;
+
+    /**
+     * The sequence number of the next record.
+     */
+    private long next = 1;
+
+    /**
+     * @param capacity the size of the ring buffer, in bytes. With {@literal 0}, events are numbered but not retained.
+     */
+    EventJournal(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.buffer = ByteBuffer.allocateDirect(this.capacity);
+        // Records hold at least one byte of path.
+        int records = this.capacity / (HEADER + 1) + 1;
+        this.checkpoints = new long[records / CHECKPOINT_INTERVAL + 2];
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param type the type of the event
+     * @param path the canonical path of the resource
+     * @return the sequence number of the event
+     */
+    synchronized long append(ResourceEvent type, Path path) {
+        long sequence = next++;
+        byte[] bytes = path.toString().getBytes(UTF_8);
+        int size = HEADER + bytes.length;
+        if (size > capacity) {
+            // Cannot be retained: the previous events are not contiguous with the next ones anymore.
+            tail = head;
+            first = next;
+            return sequence;
+        }
+        while (head - tail + size > capacity) {
+            copyOut(tail, header, HEADER);
+            tail += HEADER + ByteBuffer.wrap(header, 9, 4).getInt();
+            first++;
+        }
+        if ((sequence - 1) % CHECKPOINT_INTERVAL == 0) {
+            checkpoints[slot(sequence)] = head;
+        }
+        ByteBuffer.wrap(header).putLong(sequence).put((byte) type.ordinal()).putInt(bytes.length);
+        copyIn(head, header, HEADER);
+        copyIn(head + HEADER, bytes, bytes.length);
+        head += size;
+        return sequence;
+    }
+
+    /**
+     * Reads the retained events, from the oldest to the newest.
+     *
+     * @param from the sequence number of the first event to return
+     * @param max  the maximum number of events to return
+     * @return the events whose sequence number is greater than or equal to {@code from}. The first returned event
+     * may be more recent than {@code from} if some events were dropped, see {@link #getFirstSequence()}.
+     */
+    public List<Entry> read(long from, int max) {
+        byte[] records;
+        int count = 0;
+        synchronized (this) {
+            if (from >= next || max <= 0) {
+                return Collections.emptyList();
+            }
+            long position = tail;
+            long sequence = first;
+            long checkpoint = (from - 1) / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL + 1;
+            if (checkpoint > first) {
+                // The checkpoint record is still retained.
+                position = checkpoints[slot(checkpoint)];
+                sequence = checkpoint;
+            }
+            while (position < head && sequence < from) {
+                position += HEADER + lengthAt(position);
+                sequence++;
+            }
+            long start = position;
+            while (position < head && count < max) {
+                position += HEADER + lengthAt(position);
+                count++;
+            }
+            records = new byte[(int) (position - start)];
+            if (records.length > 0) {
+                copyOut(start, records, records.length);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<Entry>(count);
+        ByteBuffer reader = ByteBuffer.wrap(records);
+        for (int i = 0; i < count; i++) {
+            long sequence = reader.getLong();
+            ResourceEvent type = TYPES[reader.get()];
+            int length = reader.getInt();
+            String path = new String(records, reader.position(), length, UTF_8);
+            reader.position(reader.position() + length);
+            entries.add(new Entry(sequence, type, Path.from(path)));
+        }
+        return entries;
+    }
+
+    /**
+     * @return the sequence number of the oldest retained event. If it is the next sequence number, no event is
+     * retained.
+     */
+    public synchronized long getFirstSequence() {
+        return first;
+    }
+
+    /**
+     * @return the sequence number of the last event, {@literal 0} if no event was recorded
+     */
+    public synchronized long getLastSequence() {
+        return next - 1;
+    }
+
+    /**
+     * @return the size of the ring buffer, in bytes
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int slot(long sequence) {
+        return (int) ((sequence - 1) / CHECKPOINT_INTERVAL % checkpoints.length);
+    }
+
+    /**
+     * @return the length of the path of the record at the given offset
+     */
+    private int lengthAt(long position) {
+        copyOut(position, header, HEADER);
+        return ByteBuffer.wrap(header, 9, 4).getInt();
+    }
+
+    private void copyIn(long position, byte[] bytes, int length) {
+        int offset = (int) (position % capacity);
+        int chunk = Math.min(length, capacity - offset);
+        buffer.position(offset);
+        buffer.put(bytes, 0, chunk);
+        if (chunk < length) {
+            buffer.position(0);
+            buffer.put(bytes, chunk, length - chunk);
+        }
+    }
+
+    private void copyOut(long position, byte[] bytes, int length) {
+        int offset = (int) (position % capacity);
+        int chunk = Math.min(length, capacity - offset);
+        buffer.position(offset);
+        buffer.get(bytes, 0, chunk);
+        if (chunk < length) {
+            buffer.position(0);
+            buffer.get(bytes, chunk, length - chunk);
+        }
+    }
+
+    /**
+     * A recorded event.
+     */
+    public static final class Entry {
+
+        private final long sequence;
+
+        private final ResourceEvent type;
+
+        private final Path path;
+
+        private Entry(long sequence, ResourceEvent type, Path path) {
+            this.sequence = sequence;
+            this.type = type;
+            this.path = path;
+        }
+
+        /**
+         * @return the sequence number of the event
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the type of the event
+         */
+        public ResourceEvent getType() {
+            return type;
+        }
+
+        /**
+         * @return the canonical path of the resource
+         */
+        public Path getPath() {
+            return path;
+        }
+    }
+}
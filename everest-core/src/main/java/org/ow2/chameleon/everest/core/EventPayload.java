@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.impl.DefaultReadOnlyResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Relation;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.*;
+
+/**
+ * The expensive parts of the events sent by everest, only computed if a handler reads them.
+ * <p>
+ * The metadata and relations of the resource are read from the resource on first access, then memoized. They
+ * reflect the state of the resource at that time, which may be more recent than the event.
+ * </p>
+ * <p>
+ * Deleted resources cannot be read later on: they are {@linkplain #detach(Resource) detached} when the event is
+ * posted, so the event carries their last state and does not hold them.
+ * </p>
+ */
+final class EventPayload {
+
+    private EventPayload() {
+        // Utility class
+    }
+
+    /**
+     * @param resource a resource
+     * @return a view of the metadata of the given resource, read on first access
+     */
+    static ResourceMetadata metadata(Resource resource) {
+        return new LazyMetadata(resource);
+    }
+
+    /**
+     * @param resource a resource
+     * @return a view of the relations of the given resource, read on first access
+     */
+    static List<Relation> relations(Resource resource) {
+        return new LazyRelations(resource);
+    }
+
+    /**
+     * @param resource a resource being deleted
+     * @return a copy of the given resource, holding its current metadata and relations
+     */
+    static Resource detach(Resource resource) {
+        return resource instanceof Detached ? resource : new Detached(resource);
+    }
+
+    /**
+     * @param resource a resource, possibly detached
+     * @return the class name of the (original) resource
+     */
+    static String typeOf(Resource resource) {
+        return resource instanceof Detached ? ((Detached) resource).type : resource.getClass().getName();
+    }
+
+    private static final class LazyMetadata extends AbstractMap<String, Object> implements ResourceMetadata {
+
+        private Resource resource;
+
+        private ResourceMetadata metadata;
+
+        private LazyMetadata(Resource resource) {
+            this.resource = resource;
+        }
+
+        private synchronized ResourceMetadata metadata() {
+            if (metadata == null) {
+                metadata = resource.getMetadata();
+                resource = null;
+            }
+            return metadata;
+        }
+
+        public <T> T get(String key, Class<? extends T> clazz) {
+            return metadata().get(key, clazz);
+        }
+
+        @Override
+        public Object get(Object key) {
+            return metadata().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return metadata().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return metadata().size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return metadata().entrySet();
+        }
+    }
+
+    private static final class LazyRelations extends AbstractList<Relation> {
+
+        private Resource resource;
+
+        private List<Relation> relations;
+
+        private LazyRelations(Resource resource) {
+            this.resource = resource;
+        }
+
+        private synchronized List<Relation> relations() {
+            if (relations == null) {
+                relations = resource.getRelations();
+                resource = null;
+            }
+            return relations;
+        }
+
+        @Override
+        public Relation get(int index) {
+            return relations().get(index);
+        }
+
+        @Override
+        public int size() {
+            return relations().size();
+        }
+    }
+
+    /**
+     * The state of a deleted resource, read when the deletion is posted.
+     */
+    private static final class Detached extends DefaultReadOnlyResource {
+
+        private final Path canonicalPath;
+
+        private final String type;
+
+        private final ResourceMetadata metadata;
+
+        private final List<Relation> relations;
+
+        private Detached(Resource resource) {
+            super(resource.getPath());
+            this.canonicalPath = resource.getCanonicalPath();
+            this.type = resource.getClass().getName();
+            this.metadata = readMetadata(resource);
+            this.relations = readRelations(resource);
+        }
+
+        private static ResourceMetadata readMetadata(Resource resource) {
+            try {
+                ResourceMetadata metadata = resource.getMetadata();
+                // Copied through the entry set, so the lazy values are computed now.
+                return metadata == null || metadata.isEmpty() ? ImmutableResourceMetadata.EMPTY
+                        : ImmutableResourceMetadata.of(new LinkedHashMap<String, Object>(metadata));
+            } catch (RuntimeException e) {
+                // The resource may already be partly torn down.
+                return ImmutableResourceMetadata.EMPTY;
+            }
+        }
+
+        private static List<Relation> readRelations(Resource resource) {
+            try {
+                List<Relation> relations = resource.getRelations();
+                return relations == null ? Collections.<Relation>emptyList()
+                        : Collections.unmodifiableList(new ArrayList<Relation>(relations));
+            } catch (RuntimeException e) {
+                return Collections.emptyList();
+            }
+        }
+
+        @Override
+        public Path getCanonicalPath() {
+            return canonicalPath;
+        }
+
+        @Override
+        public ResourceMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public List<Relation> getRelations() {
+            return relations;
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            return Collections.emptyList();
+        }
+    }
+
+}
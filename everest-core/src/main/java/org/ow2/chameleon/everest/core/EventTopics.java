@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import java.util.*;
+
+/**
+ * The topics the bound event handlers subscribe to, telling whether an event has any chance to be delivered.
+ * <p>
+ * Topics follow the EventAdmin syntax: either an exact topic, or a prefix followed by {@code /*}, or {@code *} alone.
+ * Handlers are rarely bound, so each change rebuilds an immutable snapshot and lookups never lock.
+ * </p>
+ */
+final class EventTopics {
+
+    /**
+     * The topics of each bound handler, by service reference.
+     */
+    private final Map<Object, String[]> handlers = new HashMap<Object, String[]>();
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.<String[]>emptyList());
+
+    /**
+     * Adds a handler, or updates its topics.
+     *
+     * @param handler the handler, or its service reference
+     * @param topics  the value of its {@code event.topics} property: a string, an array or a collection of strings
+     */
+    synchronized void add(Object handler, Object topics) {
+        handlers.put(handler, toArray(topics));
+        snapshot = new Snapshot(handlers.values());
+    }
+
+    /**
+     * Removes a handler.
+     *
+     * @param handler the handler, or its service reference
+     */
+    synchronized void remove(Object handler) {
+        if (handlers.remove(handler) != null) {
+            snapshot = new Snapshot(handlers.values());
+        }
+    }
+
+    /**
+     * @param topic a topic
+     * @return {@literal true} if a bound handler subscribes to the given topic
+     */
+    boolean hasListener(String topic) {
+        return snapshot.matches(topic);
+    }
+
+    private static String[] toArray(Object topics) {
+        if (topics instanceof String) {
+            return new String[]{(String) topics};
+        } else if (topics instanceof String[]) {
+            return (String[]) topics;
+        } else if (topics instanceof Collection) {
+            List<String> list = new ArrayList<String>();
+            for (Object topic : (Collection<?>) topics) {
+                list.add(String.valueOf(topic));
+            }
+            return list.toArray(new String[list.size()]);
+        }
+        return new String[0];
+    }
+
+    /**
+     * The subscribed topics, at some point in time.
+     */
+    private static final class Snapshot {
+
+        private final boolean all;
+
+        private final Set<String> exact = new HashSet<String>();
+
+        /**
+         * The prefixes of the wildcard topics, ending with a {@code /}.
+         */
+        private final String[] prefixes;
+
+        private Snapshot(Collection<String[]> subscriptions) {
+            boolean any = false;
+            List<String> wildcards = new ArrayList<String>();
+            for (String[] topics : subscriptions) {
+                for (String topic : topics) {
+                    if (topic.equals("*")) {
+                        any = true;
+                    } else if (topic.endsWith("/*")) {
+                        wildcards.add(topic.substring(0, topic.length() - 1));
+                    } else {
+                        exact.add(topic);
+                    }
+                }
+            }
+            this.all = any;
+            this.prefixes = wildcards.toArray(new String[wildcards.size()]);
+        }
+
+        private boolean matches(String topic) {
+            if (all || exact.contains(topic)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (topic.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -17,17 +17,29 @@ package org.ow2.chameleon.everest.core;
 
 import org.apache.felix.ipojo.annotations.*;
 import org.ow2.chameleon.everest.impl.DefaultReadOnlyResource;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.DefaultRequest;
+import org.ow2.chameleon.everest.impl.DefaultRequestResult;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.impl.RequestTracing;
 import org.ow2.chameleon.everest.managers.everest.EverestRootResource;
 import org.ow2.chameleon.everest.services.*;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Everest Core.
  */
-@Component
+@Component(managedservice = Everest.CONFIGURATION_PID)
 @Instantiate
 @Provides(specifications = EverestService.class)
 public class Everest extends DefaultReadOnlyResource implements EverestService {
@@ -42,13 +54,84 @@ public class Everest extends DefaultReadOnlyResource implements EverestService {
      */
     public static final String DEBUG_REQUEST = "everest.debug.request";
 
-    private Map<Path, Resource> resources = new LinkedHashMap<Path, Resource>();
-    private List<ResourceExtender> extenders = new ArrayList<ResourceExtender>();
+    /**
+     * The system property setting the window, in milliseconds, within which the events posted on the same resource
+     * are merged. {@literal 0} (the default) disables coalescing.
+     */
+    public static final String EVENT_COALESCING_WINDOW = "everest.events.coalescing.window";
+
+    /**
+     * The system property setting the number of resources whose last published metadata is kept, so their
+     * {@code UPDATED} events carry a {@link MetadataDelta}. {@literal 0} (the default) disables deltas.
+     */
+    public static final String EVENT_DELTA_CACHE_SIZE = "everest.events.delta.cache.size";
+
+    /**
+     * The system property adding the full {@code metadata} to the {@code UPDATED} events carrying a
+     * {@link MetadataDelta}. By default (false), these events only carry the delta.
+     */
+    public static final String EVENT_DELTA_FULL_METADATA = "everest.events.delta.metadata";
+
+    /**
+     * The system property setting the size, in bytes, of the event journal (see {@link EventJournal}). It is only read
+     * at startup. {@literal 0} disables the journal, the default is 1 MB.
+     */
+    public static final String EVENT_JOURNAL_SIZE = "everest.events.journal.size";
+
+    /**
+     * The system property enabling the {@link MetadataIndex}, fed by the posted events and used to answer queries.
+     * Indexing reads the metadata of the resources when they post an event, lazy values left aside. Disabled by
+     * default.
+     * <p>
+     * Only enable it if the resources post an event when they are created and each time their metadata change: a
+     * filtered query skips the indexed resources whose indexed state does not match, and only visits the matching
+     * ones in the subtrees whose resources are all indexed (see {@link IndexedQueries}). A resource whose metadata
+     * changed silently may be missing from the results until its next event.
+     * </p>
+     */
+    public static final String METADATA_INDEX = "everest.index.metadata";
+
+    /**
+     * The system property setting the number of threads evaluating the queries over large trees (see
+     * {@link QueryExecutor}). {@literal 1} evaluates them on the calling thread, the default is the number of
+     * processors.
+     */
+    public static final String QUERY_PARALLELISM = "everest.query.parallelism";
+
+    /**
+     * The ConfigAdmin PID of everest. Its configuration accepts the {@link #SYNCHRONOUS_PROCESSING},
+     * {@link #DEBUG_REQUEST}, {@link #EVENT_COALESCING_WINDOW}, {@link #EVENT_DELTA_CACHE_SIZE},
+     * {@link #EVENT_DELTA_FULL_METADATA}, {@link #METADATA_INDEX} and {@link #QUERY_PARALLELISM} properties, overriding
+     * the system properties.
+     */
+    public static final String CONFIGURATION_PID = "org.ow2.chameleon.everest";
+
+    /**
+     * The maximum number of memoized topics.
+     */
+    private static final int MAX_TOPICS = 10000;
+
+    /**
+     * The current snapshot of the root resources and extenders.
+     * Snapshots are immutable: the bind and unbind callbacks atomically swap the current snapshot with an updated copy,
+     * so requests read them without locking.
+     */
+    private final AtomicReference<Registry> registry = new AtomicReference<Registry>(Registry.EMPTY);
+
+    /**
+     * Runs the asynchronous requests.
+     */
+    private final AsyncProcessor async = new AsyncProcessor();
+
+    /**
+     * The request metrics.
+     */
+    private final RequestMetrics metrics = new RequestMetrics();
 
     public Everest() {
         super(Path.from("/"));
         // Add the everest domain
-        resources.put(Path.from("/everest"), new EverestRootResource(this));
+        registry.set(Registry.EMPTY.withRoot(new EverestRootResource(this)));
     }
 
     /**
@@ -56,62 +139,367 @@ public class Everest extends DefaultReadOnlyResource implements EverestService {
      */
     private static volatile EventAdmin eventAdmin;
 
+    /**
+     * The topics of the event handlers, so events nobody listens to are not built.
+     */
+    private static final EventTopics listeners = new EventTopics();
+
+    /**
+     * The journal of the resource events, numbering them.
+     */
+    private static final EventJournal journal = new EventJournal(Integer.getInteger(EVENT_JOURNAL_SIZE, 1 << 20));
+
+    /**
+     * The current runtime settings.
+     */
+    private static volatile EverestConfiguration configuration = EverestConfiguration.fromSystemProperties();
+
+    /**
+     * The memoized event topics, by resource path. The least recently used ones are evicted first, as the paths of
+     * the deleted resources are not requested again.
+     */
+    private static final Map<Path, String> topics = new LinkedHashMap<Path, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, String> eldest) {
+            return size() > MAX_TOPICS;
+        }
+    };
+
+    /**
+     * Merges the events posted on the same resource, if enabled.
+     */
+    private static final EventCoalescer coalescer = new EventCoalescer(new EventCoalescer.Sink() {
+        public void post(ResourceEvent type, Resource resource, String topic, long sequence) {
+            Everest.post(type, resource, topic, sequence);
+        }
+    }, configuration.getCoalescingWindow());
+
+    /**
+     * The last published metadata of the resources, to compute the deltas.
+     */
+    private static final PublishedStates states = new PublishedStates(configuration.getDeltaCacheSize());
+
     @Bind(optional = true, aggregate = true)
     public void bindRootResource(Resource resource) {
-        synchronized (this) {
-            resources.put(resource.getCanonicalPath(), resource);
-        }
+        Registry current, updated;
+        do {
+            current = registry.get();
+            updated = current.withRoot(resource);
+        } while (!registry.compareAndSet(current, updated));
+        invalidateRelations();
     }
 
     @Unbind
     public void unbindRootResource(Resource resource) {
-        synchronized (this) {
-            resources.remove(resource.getCanonicalPath());
-        }
+        Registry current, updated;
+        do {
+            current = registry.get();
+            updated = current.withoutRoot(resource);
+        } while (!registry.compareAndSet(current, updated));
+        invalidateRelations();
     }
 
     @Bind(optional = true, aggregate = true)
     public void bindExtender(ResourceExtender extender) {
-        synchronized (this) {
-            extenders.add(extender);
-        }
+        Registry current, updated;
+        do {
+            current = registry.get();
+            updated = current.withExtender(extender);
+        } while (!registry.compareAndSet(current, updated));
     }
 
     @Unbind
     public void unbindExtender(ResourceExtender extender) {
-        synchronized (this) {
-            extenders.remove(extender);
-        }
+        Registry current, updated;
+        do {
+            current = registry.get();
+            updated = current.withoutExtender(extender);
+        } while (!registry.compareAndSet(current, updated));
+    }
+
+    /**
+     * @return the unmodifiable map of the root resources, sorted by path
+     */
+    public Map<Path, Resource> getEverestResources() {
+        return registry.get().getSortedRoots();
+    }
+
+    /**
+     * @return the unmodifiable list of the root resources
+     */
+    public List<Resource> getResources() {
+        return registry.get().getRoots();
+    }
+
+    /**
+     * @return the unmodifiable list of the extenders
+     */
+    public List<ResourceExtender> getExtenders() {
+        return registry.get().getExtenders();
+    }
+
+    /**
+     * @return the request metrics
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the current runtime settings
+     */
+    public static EverestConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Property(name = SYNCHRONOUS_PROCESSING)
+    public void setSynchronousProcessing(boolean synchronous) {
+        configuration = configuration.withSynchronousProcessing(synchronous);
+    }
+
+    @Property(name = DEBUG_REQUEST)
+    public void setDebugRequests(boolean debug) {
+        configuration = configuration.withDebugRequests(debug);
+        RequestTracing.setEnabled(debug);
+    }
+
+    @Property(name = EVENT_COALESCING_WINDOW)
+    public void setEventCoalescingWindow(long window) {
+        configuration = configuration.withCoalescingWindow(window);
+        coalescer.setWindow(configuration.getCoalescingWindow());
+    }
+
+    @Property(name = EVENT_DELTA_CACHE_SIZE)
+    public void setEventDeltaCacheSize(int size) {
+        configuration = configuration.withDeltaCacheSize(size);
+        states.setCapacity(configuration.getDeltaCacheSize());
+    }
+
+    @Property(name = EVENT_DELTA_FULL_METADATA)
+    public void setEventDeltaFullMetadata(boolean full) {
+        configuration = configuration.withDeltaWithMetadata(full);
+    }
+
+    @Property(name = METADATA_INDEX)
+    public void setMetadataIndex(boolean enabled) {
+        configuration = configuration.withMetadataIndex(enabled);
+        IndexedQueries.setEnabled(enabled);
+    }
+
+    @Property(name = QUERY_PARALLELISM)
+    public void setQueryParallelism(int threads) {
+        QueryExecutor.setParallelism(threads);
     }
 
-    public synchronized Map<Path, Resource> getEverestResources() {
-        return new TreeMap<Path, Resource>(resources);
+    /**
+     * @return the metadata index, {@literal null} if disabled
+     */
+    public static MetadataIndex getMetadataIndex() {
+        return IndexedQueries.getIndex();
     }
 
-    public synchronized List<Resource> getResources() {
-        return new ArrayList<Resource>(resources.values());
+    /**
+     * @return the event coalescer, exposing how many events were merged
+     */
+    public EventCoalescer getEventCoalescer() {
+        return coalescer;
     }
 
-    public synchronized List<ResourceExtender> getExtenders() {
-        return new ArrayList<ResourceExtender>(extenders);
+    /**
+     * @return the journal of the resource events
+     */
+    public EventJournal getEventJournal() {
+        return journal;
     }
 
     public Resource process(Request request) throws IllegalActionOnResourceException, ResourceNotFoundException {
-        // We can't extend when the original action fails.
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            // We can't extend when the original action fails.
+            Resource result = extend(request, route(request));
+            error = false;
+            return result;
+        } finally {
+            metrics.record(request.action(), domain(request.path()), System.nanoTime() - start, error);
+        }
+    }
+
+    /**
+     * Processes a batch of requests.
+     * <p>
+     * The requests are processed sequentially, in order. Consecutive read requests targeting the children of the same
+     * resource share the lookup of this parent resource, which then processes each of them, instead of walking down
+     * the resource tree for every request. The lookup of the parent is recorded in the metrics as a read request.
+     * Other requests, and read requests whose parent cannot be read, are processed as usual.
+     * </p>
+     *
+     * @param requests the requests
+     * @return the results of the requests, in the order of the requests
+     */
+    public List<RequestResult> processBatch(List<Request> requests) {
+        List<RequestResult> results = new ArrayList<RequestResult>(requests.size());
+        int i = 0;
+        while (i < requests.size()) {
+            Request request = requests.get(i);
+            int end = i + 1;
+            Path parent = request.path().getParent();
+            if (request.action() == Action.READ && request.path().getCount() >= 2) {
+                while (end < requests.size() && isSibling(requests.get(end), parent)) {
+                    end++;
+                }
+            }
+            Resource resource = end - i > 1 ? getParent(parent) : null;
+            for (; i < end; i++) {
+                results.add(processInBatch(requests.get(i), resource));
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
 
-        Resource result = super.process(request);
+    /**
+     * @return {@code true} if the given request reads a child of the given parent
+     */
+    private static boolean isSibling(Request request, Path parent) {
+        return request.action() == Action.READ && request.path().getCount() >= 2
+                && request.path().getParent().equals(parent);
+    }
 
+    /**
+     * Reads the resource at the given path, to process the reads of its children.
+     *
+     * @param parent the path of the parent resource
+     * @return the parent resource, {@code null} if it cannot be read
+     */
+    private Resource getParent(Path parent) {
+        long start = System.nanoTime();
+        Resource resource = null;
+        try {
+            resource = route(new DefaultRequest(Action.READ, parent, null));
+        } catch (Exception e) {
+            // Let the requests report the failure on their own.
+        }
+        metrics.record(Action.READ, domain(parent), System.nanoTime() - start, resource == null);
+        return resource;
+    }
+
+    /**
+     * Processes a request of a batch, never throwing.
+     *
+     * @param request the request
+     * @param parent  the parent of the resource targeted by the request if already read, {@code null} to route the
+     *                request
+     * @return the result of the request
+     */
+    private RequestResult processInBatch(Request request, Resource parent) {
+        long start = System.nanoTime();
+        RequestResult result;
+        try {
+            Resource resource;
+            // The children handled by another root resource are routed to it.
+            if (parent != null && handler(request.path()) == handler(parent.getPath())) {
+                resource = parent.process(request);
+            } else {
+                resource = route(request);
+            }
+            result = DefaultRequestResult.success(request, extend(request, resource));
+        } catch (Exception e) {
+            result = DefaultRequestResult.failure(request, e);
+        }
+        metrics.record(request.action(), domain(request.path()), System.nanoTime() - start, !result.isSuccess());
+        return result;
+    }
+
+    /**
+     * @return the root resource handling the given path, {@code null} if none
+     */
+    private Resource handler(Path path) {
+        return registry.get().getRoutes().getDeepest(path);
+    }
+
+    /**
+     * Applies the extenders to the result of a request.
+     *
+     * @param request the request
+     * @param result  the resource returned by the request
+     * @return the extended resource
+     */
+    private Resource extend(Request request, Resource result) {
         // Extensions
         // We must update the resulted resource with the extensions
-        for (ResourceExtender extender : getExtenders()) {
+        // Only the extenders whose scope contains the resulting resource are considered.
+        for (ResourceExtender extender : registry.get().getExtenderIndex().select(result)) {
             if (extender.getFilter().accept(result)) {
                 result = extender.extend(request, result);
             }
         }
-
         return result;
     }
 
+    public Future<Resource> processAsync(Request request) {
+        return processAsync(request, 0, TimeUnit.MILLISECONDS);
+    }
+
+    public Future<Resource> processAsync(final Request request, long timeout, TimeUnit unit) {
+        return async.submit(new Callable<Resource>() {
+            public Resource call() throws Exception {
+                return process(request);
+            }
+        }, timeout, unit);
+    }
+
+    /**
+     * Sets the executor running the asynchronous requests.
+     * By default, they run on a pool of daemon threads, sized by the {@code everest.processing.async.threads} system
+     * property.
+     *
+     * @param executor the executor, {@code null} to use the default pool. The caller remains responsible for shutting
+     *                 it down.
+     */
+    public void setExecutor(ExecutorService executor) {
+        async.setExecutor(executor);
+    }
+
+    @Invalidate
+    public void stop() {
+        async.shutdown();
+        coalescer.shutdown();
+    }
+
+    /**
+     * Dispatches the given request to the deepest root resource whose path is a prefix of the request path.
+     * The root resources are looked up in the routing index, so the cost of this dispatch only depends on the depth of
+     * the request path. Requests targeting the everest root itself are processed as usual.
+     *
+     * @param request the request
+     * @return the resource returned by the root resource handling the request
+     * @throws IllegalActionOnResourceException if the action is illegal for the targeted resource
+     * @throws ResourceNotFoundException        if no root resource handles the request path
+     */
+    private Resource route(Request request) throws IllegalActionOnResourceException, ResourceNotFoundException {
+        Path path = request.path();
+        if (path.getCount() == 0) {
+            return super.process(request);
+        }
+        Resource handler = registry.get().getRoutes().getDeepest(path);
+        if (handler == null) {
+            throw new ResourceNotFoundException(request);
+        }
+        return handler.process(request);
+    }
+
+    /**
+     * @param path the path of a request
+     * @return the metrics domain of the root resource handling the path
+     */
+    private String domain(Path path) {
+        if (path.getCount() == 0) {
+            return RequestMetrics.ROOT_DOMAIN;
+        }
+        Resource handler = handler(path);
+        return RequestMetrics.getDomain(handler == null ? null : handler.getPath());
+    }
+
     @Bind(optional = true, proxy = false)
     public void bindEventAdmin(EventAdmin ea) {
         eventAdmin = ea;
@@ -122,10 +510,52 @@ public class Everest extends DefaultReadOnlyResource implements EverestService {
         eventAdmin = null;
     }
 
+    /**
+     * Tracks the topics of the event handlers. Only their references are bound: getting the handlers would activate
+     * the lazy ones.
+     */
+    @Bind(id = "eventHandlers", specification = "org.osgi.service.event.EventHandler", optional = true,
+            aggregate = true)
+    public void bindEventHandler(ServiceReference reference) {
+        listeners.add(reference, reference.getProperty(EventConstants.EVENT_TOPIC));
+    }
+
+    @Modified(id = "eventHandlers")
+    public void modifiedEventHandler(ServiceReference reference) {
+        listeners.add(reference, reference.getProperty(EventConstants.EVENT_TOPIC));
+    }
+
+    @Unbind(id = "eventHandlers")
+    public void unbindEventHandler(ServiceReference reference) {
+        listeners.remove(reference);
+    }
+
     /**
      * Post (asynchronously) the state of the given resource.
      * <p>
-     * The topic of the sent event is the complete canonical path of the resource ({@code /everest/...}).
+     * The event is first recorded in the {@linkplain EventJournal journal}, which gives it its sequence number, and
+     * in the {@link MetadataIndex} if enabled, even if it is not sent.
+     * </p>
+     * <p>
+     * The topic of the sent event is the complete canonical path of the resource ({@code /everest/...}). No event is
+     * built if no event handler subscribes to this topic.
+     * </p>
+     * <p>
+     * The event carries the {@code eventType}, the {@code canonicalPath} and the {@code resourceType} (class name) of
+     * the resource, and its sequence number as {@code version}. Its {@code metadata} and
+     * {@code relations} are only read from the resource when a handler accesses them, except for {@code DELETED}
+     * events: the state of a deleted resource is read when the event is posted, while the resource still exists.
+     * </p>
+     * <p>
+     * If a coalescing window is set (see {@link #EVENT_COALESCING_WINDOW}) and events are sent asynchronously, the
+     * event is delayed until the end of the window, and merged with the other events posted on the same resource in
+     * the meantime.
+     * </p>
+     * <p>
+     * If deltas are enabled (see {@link #EVENT_DELTA_CACHE_SIZE}), the metadata are read when the event is sent, and
+     * {@code UPDATED} events carry the {@link MetadataDelta} against the last event sent on the same resource, under
+     * the {@code delta} property, instead of the full {@code metadata} (unless {@link #EVENT_DELTA_FULL_METADATA} is
+     * set). If that last state is not known anymore, the event carries the full metadata and no delta.
      * </p>
      *
      * @param eventType type of posted resource event
@@ -133,22 +563,88 @@ public class Everest extends DefaultReadOnlyResource implements EverestService {
      * @return true if event is posted to event admin, else false.
      */
     public static boolean postResource(ResourceEvent eventType, Resource resource) {
+        if ((eventType == ResourceEvent.CREATED || eventType == ResourceEvent.DELETED)
+                && resource.getCanonicalPath().getCount() > 0) {
+            // The children of the parent have changed.
+            DefaultResource.childrenChanged(resource.getCanonicalPath().getParent());
+        }
+        MetadataIndex index = IndexedQueries.getIndex();
+        if (!resource.isObservable()) {
+            if (index != null && eventType == ResourceEvent.CREATED) {
+                // Not indexed: the subtrees holding it cannot be answered by the index anymore.
+                index.uncover(resource.getCanonicalPath());
+            }
+            return false;
+        }
+        long sequence = journal.append(eventType, resource.getCanonicalPath());
+        if (index != null) {
+            if (eventType == ResourceEvent.DELETED) {
+                index.remove(resource.getCanonicalPath());
+            } else {
+                index.update(resource.getCanonicalPath(), resource.getMetadata());
+            }
+        }
+
+        if (eventAdmin == null) {
+            return false;
+        }
+        String topic = topicFromPath(resource.getCanonicalPath());
+        if (!listeners.hasListener(topic)) {
+            return false;
+        }
+        if (eventType == ResourceEvent.DELETED) {
+            // Read the last state of the resource while it still exists.
+            resource = EventPayload.detach(resource);
+        }
+
+        if (coalescer.isEnabled() && !configuration.isSynchronousProcessing()) {
+            coalescer.offer(eventType, resource, topic, sequence);
+            return true;
+        }
+        return post(eventType, resource, topic, sequence);
+    }
+
+    /**
+     * Builds and posts the event on the given resource.
+     */
+    private static boolean post(ResourceEvent eventType, Resource resource, String topic, long sequence) {
         EventAdmin ea = eventAdmin;
-        if (ea == null || !resource.isObservable()) {
+        if (ea == null) {
             return false;
         }
 
         Map<String, Object> map = new LinkedHashMap<String, Object>();
         map.put("eventType", eventType.toString());
         map.put("canonicalPath", resource.getCanonicalPath().toString());
-        map.put("metadata", resource.getMetadata());
-        map.put("relations", resource.getRelations());
+        map.put("resourceType", EventPayload.typeOf(resource));
+        map.put("version", sequence);
+        if (eventType == ResourceEvent.DELETED) {
+            states.remove(resource.getCanonicalPath());
+            // The resource is detached, its state was read when the event was posted.
+            map.put("metadata", resource.getMetadata());
+        } else if (!states.isEnabled()) {
+            map.put("metadata", EventPayload.metadata(resource));
+        } else {
+            ResourceMetadata current = resource.getMetadata();
+            ResourceMetadata metadata = current == null ? ImmutableResourceMetadata.EMPTY
+                    : ImmutableResourceMetadata.of(current);
+            MetadataDelta delta = states.publish(resource.getCanonicalPath(), metadata);
+            if (delta != null && eventType == ResourceEvent.UPDATED) {
+                map.put("delta", delta);
+                if (configuration.isDeltaWithMetadata()) {
+                    map.put("metadata", metadata);
+                }
+            } else {
+                map.put("metadata", metadata);
+            }
+        }
+        map.put("relations", eventType == ResourceEvent.DELETED ? resource.getRelations()
+                : EventPayload.relations(resource));
 
-        Event e = new Event(topicFromPath(resource.getCanonicalPath()), map);
+        Event e = new Event(topic, map);
 
-        String mode = System.getProperty(SYNCHRONOUS_PROCESSING);
         try {
-            if (mode != null && mode.equalsIgnoreCase("true")) {
+            if (configuration.isSynchronousProcessing()) {
                 // Sync mode
                 ea.sendEvent(e);
             } else {
@@ -165,17 +661,50 @@ public class Everest extends DefaultReadOnlyResource implements EverestService {
     }
 
     /**
-     * Transforms a path to event admin topic
+     * Transforms a path to event admin topic: {@code everest} followed by the path, where dots are replaced by
+     * {@code -}, and white spaces and colons by {@code _}.
+     * <p>
+     * Topics are computed in a single pass, and memoized.
+     * </p>
      *
      * @param path resource path
      * @return topic string
      */
     public static String topicFromPath(Path path) {
-        String pathString = path.toString();
-        pathString = "everest".concat(pathString);
-        pathString = pathString.replaceAll("\\.", "-");
-        pathString = pathString.replaceAll("\\s", "_");
-        pathString = pathString.replaceAll(":", "_");
-        return pathString;
+        String topic;
+        synchronized (topics) {
+            topic = topics.get(path);
+        }
+        if (topic == null) {
+            topic = computeTopic(path.toString());
+            synchronized (topics) {
+                topics.put(path, topic);
+            }
+        }
+        return topic;
+    }
+
+    private static String computeTopic(String path) {
+        StringBuilder topic = new StringBuilder("everest".length() + path.length()).append("everest");
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            switch (c) {
+                case '.':
+                    topic.append('-');
+                    break;
+                case ':':
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\u000B':
+                case '\f':
+                case '\r':
+                    topic.append('_');
+                    break;
+                default:
+                    topic.append(c);
+            }
+        }
+        return topic.toString();
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+/**
+ * The runtime settings of everest.
+ * <p>
+ * Settings are initialized from the system properties, then updated through the configuration of the everest component
+ * (ConfigAdmin PID {@link Everest#CONFIGURATION_PID}). Instances are immutable: reading a setting on a hot path is a
+ * plain field read.
+ * </p>
+ */
+public final class EverestConfiguration {
+
+    private final boolean synchronousProcessing;
+
+    private final boolean debugRequests;
+
+    private final long coalescingWindow;
+
+    private final int deltaCacheSize;
+
+    private final boolean metadataIndex;
+
+    private final boolean deltaWithMetadata;
+
+    private EverestConfiguration(boolean synchronousProcessing, boolean debugRequests, long coalescingWindow,
+                                 int deltaCacheSize, boolean metadataIndex, boolean deltaWithMetadata) {
+        this.synchronousProcessing = synchronousProcessing;
+        this.debugRequests = debugRequests;
+        this.coalescingWindow = coalescingWindow;
+        this.deltaCacheSize = deltaCacheSize;
+        this.metadataIndex = metadataIndex;
+        this.deltaWithMetadata = deltaWithMetadata;
+    }
+
+    /**
+     * @return the configuration set by the system properties
+     */
+    static EverestConfiguration fromSystemProperties() {
+        return new EverestConfiguration(
+                Boolean.parseBoolean(System.getProperty(Everest.SYNCHRONOUS_PROCESSING)),
+                Boolean.parseBoolean(System.getProperty(Everest.DEBUG_REQUEST)),
+                Math.max(0, Long.getLong(Everest.EVENT_COALESCING_WINDOW, 0)),
+                Math.max(0, Integer.getInteger(Everest.EVENT_DELTA_CACHE_SIZE, 0)),
+                Boolean.parseBoolean(System.getProperty(Everest.METADATA_INDEX)),
+                Boolean.parseBoolean(System.getProperty(Everest.EVENT_DELTA_FULL_METADATA)));
+    }
+
+    /**
+     * @return {@literal true} if events are sent synchronously
+     */
+    public boolean isSynchronousProcessing() {
+        return synchronousProcessing;
+    }
+
+    /**
+     * @return {@literal true} if the processed requests are dumped to {@code System.out}
+     */
+    public boolean isDebugRequests() {
+        return debugRequests;
+    }
+
+    /**
+     * @return the event coalescing window, in milliseconds, {@literal 0} if disabled
+     */
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    /**
+     * @return the number of resources whose last published metadata is kept to compute deltas, {@literal 0} if
+     * disabled
+     */
+    public int getDeltaCacheSize() {
+        return deltaCacheSize;
+    }
+
+    /**
+     * @return {@literal true} if the metadata of the resources are indexed
+     */
+    public boolean isMetadataIndex() {
+        return metadataIndex;
+    }
+
+    /**
+     * @return {@literal true} if the events carrying a delta also carry the full metadata
+     */
+    public boolean isDeltaWithMetadata() {
+        return deltaWithMetadata;
+    }
+
+    EverestConfiguration withSynchronousProcessing(boolean synchronous) {
+        return new EverestConfiguration(synchronous, debugRequests, coalescingWindow, deltaCacheSize,
+                metadataIndex, deltaWithMetadata);
+    }
+
+    EverestConfiguration withDebugRequests(boolean debug) {
+        return new EverestConfiguration(synchronousProcessing, debug, coalescingWindow, deltaCacheSize, metadataIndex,
+                deltaWithMetadata);
+    }
+
+    EverestConfiguration withCoalescingWindow(long window) {
+        return new EverestConfiguration(synchronousProcessing, debugRequests, Math.max(0, window), deltaCacheSize,
+                metadataIndex, deltaWithMetadata);
+    }
+
+    EverestConfiguration withDeltaCacheSize(int size) {
+        return new EverestConfiguration(synchronousProcessing, debugRequests, coalescingWindow, Math.max(0, size),
+                metadataIndex, deltaWithMetadata);
+    }
+
+    EverestConfiguration withMetadataIndex(boolean index) {
+        return new EverestConfiguration(synchronousProcessing, debugRequests, coalescingWindow, deltaCacheSize, index,
+                deltaWithMetadata);
+    }
+
+    EverestConfiguration withDeltaWithMetadata(boolean full) {
+        return new EverestConfiguration(synchronousProcessing, debugRequests, coalescingWindow, deltaCacheSize,
+                metadataIndex, full);
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceExtender;
+import org.ow2.chameleon.everest.services.ScopedResourceExtender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An immutable index of the bound extenders, selecting the extenders that may extend a resource without evaluating the
+ * filter of every extender.
+ * <p>
+ * Extenders are identified by their rank, i.e. their position in binding order. Extenders scoped by path are indexed in
+ * a {@link PathTrie}, extenders only scoped by type are looked up by resource class, and plain (unscoped) extenders are
+ * always selected.
+ * </p>
+ */
+final class ExtenderIndex {
+
+    private static final int[] NO_RANK = new int[0];
+
+    /**
+     * The empty index. Declared after {@link #NO_RANK}, which it uses.
+     */
+    static final ExtenderIndex EMPTY = new ExtenderIndex(new ResourceExtender[0]);
+
+    /**
+     * All the extenders, in binding order.
+     */
+    private final ResourceExtender[] m_extenders;
+
+    /**
+     * Whether at least one extender declares a scope. If not, all the extenders are always selected.
+     */
+    private final boolean m_scoped;
+
+    /**
+     * The type scope of each extender, indexed by rank. {@code null} when the extender has no type scope.
+     */
+    private final Class<?>[] m_types;
+
+    /**
+     * The ranks of the extenders with no scope at all.
+     */
+    private final int[] m_unscoped;
+
+    /**
+     * The ranks of the extenders scoped by type only.
+     */
+    private final int[] m_typeScoped;
+
+    /**
+     * The ranks of the extenders scoped by path, indexed by scope.
+     */
+    private final PathTrie<int[]> m_pathScoped;
+
+    /**
+     * The ranks of the type scoped extenders accepting a given resource class, computed on demand. Classes are weakly
+     * held, so the class loaders of uninstalled bundles can be collected. Guarded by itself.
+     */
+    private final Map<Class<?>, int[]> m_typeCache = new WeakHashMap<Class<?>, int[]>();
+
+    /**
+     * Builds the index of the given extenders.
+     *
+     * @param extenders the extenders, in binding order
+     */
+    ExtenderIndex(ResourceExtender[] extenders) {
+        m_extenders = extenders;
+        m_types = new Class<?>[extenders.length];
+        List<Integer> unscoped = new ArrayList<Integer>();
+        List<Integer> typeScoped = new ArrayList<Integer>();
+        PathTrie<int[]> pathScoped = PathTrie.empty();
+
+        for (int rank = 0; rank < extenders.length; rank++) {
+            Path scope = null;
+            if (extenders[rank] instanceof ScopedResourceExtender) {
+                ScopedResourceExtender extender = (ScopedResourceExtender) extenders[rank];
+                scope = extender.getScope();
+                m_types[rank] = extender.getResourceType();
+            }
+            if (scope != null) {
+                pathScoped = pathScoped.put(scope, append(pathScoped.get(scope), rank));
+            } else if (m_types[rank] != null) {
+                typeScoped.add(rank);
+            } else {
+                unscoped.add(rank);
+            }
+        }
+
+        m_scoped = unscoped.size() != extenders.length;
+        m_unscoped = toArray(unscoped);
+        m_typeScoped = toArray(typeScoped);
+        m_pathScoped = pathScoped;
+    }
+
+    /**
+     * Copies an index, except its cache.
+     */
+    private ExtenderIndex(ExtenderIndex index) {
+        m_extenders = index.m_extenders;
+        m_scoped = index.m_scoped;
+        m_types = index.m_types;
+        m_unscoped = index.m_unscoped;
+        m_typeScoped = index.m_typeScoped;
+        m_pathScoped = index.m_pathScoped;
+    }
+
+    /**
+     * @return an index of the same extenders, with an empty cache
+     */
+    ExtenderIndex withoutCache() {
+        return m_typeScoped.length == 0 ? this : new ExtenderIndex(this);
+    }
+
+    /**
+     * Selects the extenders that may extend the given resource, i.e. the unscoped extenders and the scoped extenders
+     * whose scope contains the resource.
+     *
+     * @param resource the resource
+     * @return the selected extenders, in binding order. The returned array must not be modified.
+     */
+    ResourceExtender[] select(Resource resource) {
+        if (!m_scoped) {
+            return m_extenders;
+        }
+        boolean[] selected = new boolean[m_extenders.length];
+        for (int rank : m_unscoped) {
+            selected[rank] = true;
+        }
+        for (int rank : getTypeScoped(resource.getClass())) {
+            selected[rank] = true;
+        }
+        if (!m_pathScoped.isEmpty()) {
+            List<int[]> ranks = new ArrayList<int[]>();
+            m_pathScoped.collect(resource.getPath(), ranks);
+            if (!resource.getCanonicalPath().equals(resource.getPath())) {
+                m_pathScoped.collect(resource.getCanonicalPath(), ranks);
+            }
+            for (int[] scope : ranks) {
+                for (int rank : scope) {
+                    if (m_types[rank] == null || m_types[rank].isInstance(resource)) {
+                        selected[rank] = true;
+                    }
+                }
+            }
+        }
+
+        List<ResourceExtender> result = new ArrayList<ResourceExtender>();
+        for (int rank = 0; rank < selected.length; rank++) {
+            if (selected[rank]) {
+                result.add(m_extenders[rank]);
+            }
+        }
+        return result.toArray(new ResourceExtender[result.size()]);
+    }
+
+    /**
+     * @param clazz a resource class
+     * @return the ranks of the extenders only scoped by type, whose type is assignable from the given class
+     */
+    private int[] getTypeScoped(Class<?> clazz) {
+        if (m_typeScoped.length == 0) {
+            return NO_RANK;
+        }
+        int[] ranks;
+        synchronized (m_typeCache) {
+            ranks = m_typeCache.get(clazz);
+        }
+        if (ranks == null) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int rank : m_typeScoped) {
+                if (m_types[rank].isAssignableFrom(clazz)) {
+                    list.add(rank);
+                }
+            }
+            ranks = toArray(list);
+            synchronized (m_typeCache) {
+                m_typeCache.put(clazz, ranks);
+            }
+        }
+        return ranks;
+    }
+
+    private static int[] append(int[] array, int value) {
+        if (array == null) {
+            return new int[]{value};
+        }
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return NO_RANK;
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+}
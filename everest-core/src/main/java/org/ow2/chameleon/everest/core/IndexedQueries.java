@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.filters.QueryPlanner;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.ow2.chameleon.everest.core.Everest.METADATA_INDEX;
+
+/**
+ * The {@link MetadataIndex} of everest, and the queries it answers.
+ * <p>
+ * The index is enabled by the {@code everest.index.metadata} system property, and by the configuration of everest. It
+ * lives here rather than in {@link Everest}, so filtering resources does not load (and initialize) it.
+ * </p>
+ * <p>
+ * When the index can answer the plan of a filter (see {@link QueryPlanner#candidates}) over a subtree it covers, the
+ * filter is only evaluated on the candidate resources, reached by descending their paths. Otherwise the subtree is
+ * visited by the {@link QueryExecutor}, and covered if all its resources are indexed.
+ * </p>
+ */
+public final class IndexedQueries {
+
+    private static final MetadataIndex INDEX = new MetadataIndex();
+
+    private static volatile boolean enabled = Boolean.getBoolean(METADATA_INDEX);
+
+    private IndexedQueries() {
+        // Utility class
+    }
+
+    /**
+     * @return the metadata index, {@literal null} if disabled
+     */
+    public static MetadataIndex getIndex() {
+        return enabled ? INDEX : null;
+    }
+
+    /**
+     * @param index whether the metadata index is enabled, it is emptied when disabled
+     */
+    public static void setEnabled(boolean index) {
+        enabled = index;
+        if (!index) {
+            INDEX.clear();
+        }
+    }
+
+    /**
+     * @param root   the root of a tree
+     * @param filter a filter
+     * @return the resources of the tree (the root included) accepted by the filter, in depth-first pre-order
+     */
+    public static List<Resource> filter(Resource root, ResourceFilter filter) {
+        MetadataIndex index = getIndex();
+        if (index == null) {
+            return QueryExecutor.filter(root, filter);
+        }
+        Path path = root.getCanonicalPath();
+        if (!path.equals(root.getPath())) {
+            return QueryExecutor.filter(root, filter);
+        }
+        Set<Path> candidates;
+        long stamp = -1;
+        synchronized (index) {
+            candidates = QueryPlanner.candidates(filter, index);
+            if (candidates == null) {
+                return QueryExecutor.filter(root, filter);
+            }
+            if (!index.isCovered(path)) {
+                stamp = index.coverage(path);
+                candidates = null;
+            }
+        }
+        if (candidates != null) {
+            return collect(root, filter, candidates);
+        }
+        if (stamp < 0) {
+            return QueryExecutor.filter(root, filter);
+        }
+        Visit visit = new Visit(filter);
+        List<Resource> result = QueryExecutor.filter(root, visit);
+        index.cover(path, stamp, visit.aliased ? null : visit.paths);
+        return result;
+    }
+
+    /**
+     * @param resources a list of resources, {@literal null} elements are skipped
+     * @param filter    a filter
+     * @return the resources of the list accepted by the filter, in the list order
+     */
+    public static List<Resource> filter(List<Resource> resources, ResourceFilter filter) {
+        MetadataIndex index = getIndex();
+        if (index == null) {
+            return QueryExecutor.filter(resources, filter);
+        }
+        List<Path> paths = new ArrayList<Path>(resources.size());
+        for (Resource resource : resources) {
+            paths.add(resource == null ? null : resource.getCanonicalPath());
+        }
+        Set<Path> candidates;
+        Set<Path> indexed;
+        synchronized (index) {
+            candidates = QueryPlanner.candidates(filter, index);
+            if (candidates == null) {
+                return QueryExecutor.filter(resources, filter);
+            }
+            indexed = index.indexed(paths);
+        }
+        // The indexed resources that are not candidates are rejected by the filter.
+        List<Resource> kept = new ArrayList<Resource>(resources.size());
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            if (path != null && (candidates.contains(path) || !indexed.contains(path))) {
+                kept.add(resources.get(i));
+            }
+        }
+        return QueryExecutor.filter(kept, filter);
+    }
+
+    /**
+     * Evaluates a filter on the candidate resources of a covered subtree, visiting only them and their ancestors.
+     */
+    private static List<Resource> collect(Resource root, ResourceFilter filter, Set<Path> candidates) {
+        Path path = root.getPath();
+        Set<Path> visited = new HashSet<Path>();
+        for (Path candidate : candidates) {
+            if (!candidate.equals(path) && !path.isAncestorOf(candidate)) {
+                continue;
+            }
+            for (Path ancestor = candidate; visited.add(ancestor) && !ancestor.equals(path); ) {
+                ancestor = ancestor.getParent();
+            }
+        }
+        List<Resource> result = new ArrayList<Resource>();
+        if (visited.contains(path)) {
+            collect(root, filter, candidates, visited, result);
+        }
+        return result;
+    }
+
+    private static void collect(Resource resource, ResourceFilter filter, Set<Path> candidates, Set<Path> visited,
+                                List<Resource> result) {
+        if (candidates.contains(resource.getPath()) && filter.accept(resource)) {
+            result.add(resource);
+        }
+        List<Resource> children = resource.getResources();
+        if (children == null) {
+            return;
+        }
+        for (Resource child : children) {
+            if (child != null && visited.contains(child.getPath())) {
+                collect(child, filter, candidates, visited, result);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a filter, recording the canonical paths of the visited resources.
+     */
+    private static final class Visit implements ResourceFilter {
+
+        private final ResourceFilter filter;
+
+        private final Collection<Path> paths = new ConcurrentLinkedQueue<Path>();
+
+        private volatile boolean aliased;
+
+        private Visit(ResourceFilter filter) {
+            this.filter = filter;
+        }
+
+        public boolean accept(Resource resource) {
+            Path path = resource.getCanonicalPath();
+            if (!path.equals(resource.getPath())) {
+                aliased = true;
+            }
+            paths.add(path);
+            return filter.accept(resource);
+        }
+    }
+
+}
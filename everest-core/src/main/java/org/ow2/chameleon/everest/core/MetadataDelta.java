@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.*;
+
+/**
+ * The changes of the metadata of a resource between two published events.
+ * <p>
+ * Deltas are attached to the {@code UPDATED} events, under the {@code delta} property, when the previous state of the
+ * resource is known (see {@link Everest#EVENT_DELTA_CACHE_SIZE}). Such events only carry the full metadata if
+ * {@link Everest#EVENT_DELTA_FULL_METADATA} is set. Values are compared with {@code equals}, and arrays by content.
+ * Instances are immutable.
+ * </p>
+ */
+public final class MetadataDelta {
+
+    private final Map<String, Object> added;
+
+    private final Map<String, Object> changed;
+
+    private final Set<String> removed;
+
+    private MetadataDelta(Map<String, Object> added, Map<String, Object> changed, Set<String> removed) {
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    /**
+     * Computes the changes between two states of a resource.
+     *
+     * @param previous the previously published metadata
+     * @param current  the current metadata
+     * @return the delta turning {@code previous} into {@code current}
+     */
+    static MetadataDelta compute(ResourceMetadata previous, ResourceMetadata current) {
+        Map<String, Object> added = null;
+        Map<String, Object> changed = null;
+        Set<String> removed = null;
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (!previous.containsKey(key)) {
+                if (added == null) {
+                    added = new LinkedHashMap<String, Object>();
+                }
+                added.put(key, value);
+            } else if (!equal(previous.get(key), value)) {
+                if (changed == null) {
+                    changed = new LinkedHashMap<String, Object>();
+                }
+                changed.put(key, value);
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                if (removed == null) {
+                    removed = new LinkedHashSet<String>();
+                }
+                removed.add(key);
+            }
+        }
+        return new MetadataDelta(
+                added == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(added),
+                changed == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(changed),
+                removed == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(removed));
+    }
+
+    private static boolean equal(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a.getClass().isArray() && b.getClass().isArray()) {
+            // Arrays (e.g. objectClass) are compared by content, whatever their component type.
+            return Arrays.deepEquals(new Object[]{a}, new Object[]{b});
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * @return the entries that were not in the previous state
+     */
+    public Map<String, Object> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the entries whose value changed, with their new value
+     */
+    public Map<String, Object> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return the keys that are not in the current state anymore
+     */
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return {@literal true} if the metadata did not change
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataDelta{added=" + added + ", changed=" + changed + ", removed=" + removed + "}";
+    }
+}
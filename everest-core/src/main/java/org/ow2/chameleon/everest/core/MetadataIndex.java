@@ -0,0 +1,577 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * An inverted index of the metadata of the resources, mapping each key, and each (key, value) pair, to the canonical
+ * paths of the resources holding them.
+ * <p>
+ * The index is fed by the events posted through {@link Everest#postResource}, so it only knows the resources that
+ * posted an event, in the state they had at that time. It answers with a superset of the matching resources among
+ * the indexed ones: callers must still evaluate their filter on the returned resources, and evaluate it on all the
+ * resources the index does not know (see {@link #isIndexed(Path)}).
+ * </p>
+ * <p>
+ * Strings, booleans and enums are indexed as is, and numbers by their {@code float} value, as
+ * {@link org.ow2.chameleon.everest.filters.ResourceFilters#equalsTo(String, double)} compares them. The elements of
+ * collections and arrays are indexed separately, numbers by their {@code double} value, for the
+ * {@code arrayContains} filters. Other values are only indexed by key.
+ * </p>
+ * <p>
+ * Numeric values are also kept sorted, in a column of primitive doubles per key, so the resources whose value is
+ * greater or lower than a bound are found with a binary search.
+ * </p>
+ * <p>
+ * Indexing does not compute the {@link ImmutableResourceMetadata.Lazy} values not read yet: their keys are indexed, and
+ * their resources are returned as candidates for any value of these keys.
+ * </p>
+ * <p>
+ * The index also records the subtrees it covers: the subtrees whose resources were all indexed when last visited,
+ * and reachable through their canonical paths only. A covered subtree stays covered when its resources are updated,
+ * and until a resource that is not indexed is {@linkplain #uncover(Path) created} in it. The queries over a covered
+ * subtree are answered from the index alone, see {@link IndexedQueries}.
+ * </p>
+ */
+public final class MetadataIndex {
+
+    /**
+     * The paths of the resources holding each key.
+     */
+    private final Map<String, Set<Path>> keys = new HashMap<String, Set<Path>>();
+
+    /**
+     * The paths of the resources holding each scalar value, by key.
+     */
+    private final Map<String, Map<Object, Set<Path>>> values = new HashMap<String, Map<Object, Set<Path>>>();
+
+    /**
+     * The paths of the resources whose collection holds each element, by key.
+     */
+    private final Map<String, Map<Object, Set<Path>>> elements = new HashMap<String, Map<Object, Set<Path>>>();
+
+    /**
+     * The sorted numeric values, by key.
+     */
+    private final Map<String, NumericColumn> numbers = new HashMap<String, NumericColumn>();
+
+    /**
+     * The paths of the resources holding a lazy value not computed yet, by key.
+     */
+    private final Map<String, Set<Path>> unresolved = new HashMap<String, Set<Path>>();
+
+    /**
+     * What was indexed for each resource, to remove it on update.
+     */
+    private final Map<Path, Entry> indexed = new HashMap<Path, Entry>();
+
+    /**
+     * The roots of the covered subtrees.
+     */
+    private final Set<Path> covered = new HashSet<Path>();
+
+    /**
+     * The roots of the subtrees found not covered, and the number of changes of the index at that time: they are not
+     * visited again until the index changes.
+     */
+    private final Map<Path, Long> uncovered = new HashMap<Path, Long>();
+
+    /**
+     * The maximum number of subtrees remembered as not covered.
+     */
+    private static final int MAX_UNCOVERED = 1024;
+
+    /**
+     * The number of changes of the index.
+     */
+    private long changes;
+
+    /**
+     * The number of coverage losses, so a subtree visited while one of its resources was created is not covered.
+     */
+    private long losses;
+
+    /**
+     * Indexes the current state of a resource, replacing its previous state.
+     *
+     * @param path     the canonical path of the resource
+     * @param metadata its metadata, may be {@literal null}
+     */
+    public synchronized void update(Path path, ResourceMetadata metadata) {
+        unindex(path);
+        changes++;
+        Entry entry = new Entry();
+        if (metadata != null) {
+            Map<String, Object> entries = metadata instanceof ImmutableResourceMetadata
+                    ? ((ImmutableResourceMetadata) metadata).getRawEntries() : metadata;
+            for (Map.Entry<String, Object> e : entries.entrySet()) {
+                Object value = e.getValue();
+                if (value instanceof ImmutableResourceMetadata.Lazy) {
+                    ImmutableResourceMetadata.Lazy<?> lazy = (ImmutableResourceMetadata.Lazy<?>) value;
+                    if (!lazy.isComputed()) {
+                        entry.keys.add(e.getKey());
+                        entry.unresolved.add(e.getKey());
+                        add(keys, e.getKey(), path);
+                        add(unresolved, e.getKey(), path);
+                        continue;
+                    }
+                    value = lazy.get();
+                }
+                if (value == null) {
+                    continue;
+                }
+                String key = e.getKey();
+                entry.keys.add(key);
+                add(keys, key, path);
+                if (value instanceof Collection || value.getClass().isArray()) {
+                    for (Object element : elements(value)) {
+                        Object normalized = normalizeElement(element);
+                        if (normalized != null && entry.elements.add(new Pair(key, normalized))) {
+                            add(elements, key, normalized, path);
+                        }
+                    }
+                } else {
+                    Object normalized = normalizeScalar(value);
+                    if (normalized != null) {
+                        entry.values.add(new Pair(key, normalized));
+                        add(values, key, normalized, path);
+                        if (normalized instanceof Double && !((Double) normalized).isNaN()) {
+                            NumericColumn column = numbers.get(key);
+                            if (column == null) {
+                                column = new NumericColumn();
+                                numbers.put(key, column);
+                            }
+                            column.add((Double) normalized, path);
+                        }
+                    }
+                }
+            }
+        }
+        indexed.put(path, entry);
+    }
+
+    /**
+     * Removes a resource from the index.
+     *
+     * @param path the canonical path of the resource
+     */
+    public synchronized void remove(Path path) {
+        changes++;
+        covered.remove(path);
+        unindex(path);
+    }
+
+    private void unindex(Path path) {
+        Entry entry = indexed.remove(path);
+        if (entry == null) {
+            return;
+        }
+        for (String key : entry.keys) {
+            remove(keys, key, path);
+        }
+        for (String key : entry.unresolved) {
+            remove(unresolved, key, path);
+        }
+        for (Pair pair : entry.values) {
+            remove(values, pair, path);
+            if (pair.value instanceof Double) {
+                NumericColumn column = numbers.get(pair.key);
+                if (column != null && column.remove((Double) pair.value, path) && column.size == 0) {
+                    numbers.remove(pair.key);
+                }
+            }
+        }
+        for (Pair pair : entry.elements) {
+            remove(elements, pair, path);
+        }
+    }
+
+    /**
+     * Empties the index.
+     */
+    public synchronized void clear() {
+        keys.clear();
+        values.clear();
+        elements.clear();
+        numbers.clear();
+        unresolved.clear();
+        indexed.clear();
+        covered.clear();
+        uncovered.clear();
+        changes++;
+        losses++;
+    }
+
+    /**
+     * Drops the coverage of the subtrees holding a resource that is not indexed, as it was just created.
+     *
+     * @param path the canonical path of the resource
+     */
+    public synchronized void uncover(Path path) {
+        changes++;
+        losses++;
+        for (Path ancestor = path; ancestor != null; ancestor = ancestor.getParent()) {
+            covered.remove(ancestor);
+        }
+    }
+
+    /**
+     * @param root the canonical path of a resource
+     * @return {@literal true} if the subtree rooted at the given resource is covered
+     */
+    public synchronized boolean isCovered(Path root) {
+        for (Path ancestor = root; ancestor != null; ancestor = ancestor.getParent()) {
+            if (covered.contains(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param root the canonical path of a resource
+     * @return the stamp to {@linkplain #cover(Path, long, Collection) cover} the subtree rooted at the given resource
+     * with, {@literal -1} if it was found not covered and the index has not changed since
+     */
+    public synchronized long coverage(Path root) {
+        Long last = uncovered.get(root);
+        return last != null && last == changes ? -1 : losses;
+    }
+
+    /**
+     * Covers a subtree if all its resources are indexed.
+     *
+     * @param root  the canonical path of the root of the subtree
+     * @param stamp the stamp returned by {@link #coverage(Path)} before visiting the subtree
+     * @param paths the canonical paths of the resources of the subtree, {@literal null} if some of them are reachable
+     *              through another path
+     * @return {@literal true} if the subtree is now covered
+     */
+    public synchronized boolean cover(Path root, long stamp, Collection<Path> paths) {
+        if (stamp != losses) {
+            // A resource was created meanwhile, maybe not visited.
+            return false;
+        }
+        if (paths == null || !indexed.keySet().containsAll(paths)) {
+            if (uncovered.size() >= MAX_UNCOVERED) {
+                uncovered.clear();
+            }
+            uncovered.put(root, changes);
+            return false;
+        }
+        uncovered.remove(root);
+        covered.add(root);
+        return true;
+    }
+
+    /**
+     * @param paths canonical paths
+     * @return the given paths that are indexed
+     */
+    public synchronized Set<Path> indexed(Collection<Path> paths) {
+        Set<Path> result = new HashSet<Path>();
+        for (Path path : paths) {
+            if (indexed.containsKey(path)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param path a canonical path
+     * @return {@literal true} if the resource at the given path is indexed
+     */
+    public synchronized boolean isIndexed(Path path) {
+        return indexed.containsKey(path);
+    }
+
+    /**
+     * @return the number of indexed resources
+     */
+    public synchronized int size() {
+        return indexed.size();
+    }
+
+    /**
+     * @param key a metadata key
+     * @return the paths of the indexed resources holding a non-null value, or a lazy value, for the given key
+     */
+    public synchronized Set<Path> withKey(String key) {
+        return copy(keys.get(key));
+    }
+
+    /**
+     * @param key   a metadata key
+     * @param value a scalar value
+     * @return the paths of the indexed resources whose value for the given key may be equal to the given value
+     */
+    public synchronized Set<Path> withValue(String key, Object value) {
+        Map<Object, Set<Path>> map = values.get(key);
+        Object normalized = normalizeScalar(value);
+        return withUnresolved(key, map == null || normalized == null ? null : map.get(normalized));
+    }
+
+    /**
+     * @param key     a metadata key
+     * @param element a collection element
+     * @return the paths of the indexed resources whose collection for the given key may contain the given element
+     */
+    public synchronized Set<Path> withElement(String key, Object element) {
+        Map<Object, Set<Path>> map = elements.get(key);
+        Object normalized = normalizeElement(element);
+        return withUnresolved(key, map == null || normalized == null ? null : map.get(normalized));
+    }
+
+    /**
+     * @param key   a metadata key
+     * @param bound a number
+     * @return the paths of the indexed resources whose numeric value for the given key, as a {@code float}, is
+     * greater than the given bound
+     */
+    public synchronized Set<Path> greaterThan(String key, double bound) {
+        NumericColumn column = numbers.get(key);
+        return withUnresolved(key, column == null ? null : column.paths(column.upper(bound), column.size));
+    }
+
+    /**
+     * @param key   a metadata key
+     * @param bound a number
+     * @return the paths of the indexed resources whose numeric value for the given key, as a {@code float}, is lower
+     * than the given bound
+     */
+    public synchronized Set<Path> lowerThan(String key, double bound) {
+        NumericColumn column = numbers.get(key);
+        return withUnresolved(key, column == null ? null : column.paths(0, column.lower(bound)));
+    }
+
+    private static Set<Path> copy(Set<Path> paths) {
+        return paths == null ? new HashSet<Path>() : new HashSet<Path>(paths);
+    }
+
+    /**
+     * @return a copy of the given paths, plus the paths of the resources whose value for the given key is lazy
+     */
+    private Set<Path> withUnresolved(String key, Set<Path> paths) {
+        Set<Path> result = copy(paths);
+        Set<Path> lazy = unresolved.get(key);
+        if (lazy != null) {
+            result.addAll(lazy);
+        }
+        return result;
+    }
+
+    /**
+     * @return the indexed form of the given value, {@literal null} if such values are not indexed
+     */
+    private static Object normalizeScalar(Object value) {
+        if (value instanceof Number) {
+            return zero(((Number) value).floatValue());
+        }
+        return value instanceof String || value instanceof Boolean || value instanceof Enum ? value : null;
+    }
+
+    private static Object normalizeElement(Object element) {
+        if (element instanceof Number) {
+            return zero(((Number) element).doubleValue());
+        }
+        return element instanceof String ? element : null;
+    }
+
+    /**
+     * @return the given number, {@literal 0.0} and {@literal -0.0} being merged as they are equal numbers
+     */
+    private static Double zero(double value) {
+        return value == 0 ? 0.0 : value;
+    }
+
+    private static Iterable<?> elements(Object value) {
+        if (value instanceof Collection) {
+            return (Collection<?>) value;
+        }
+        int length = Array.getLength(value);
+        List<Object> list = new ArrayList<Object>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(Array.get(value, i));
+        }
+        return list;
+    }
+
+    private static void add(Map<String, Set<Path>> map, String key, Path path) {
+        Set<Path> paths = map.get(key);
+        if (paths == null) {
+            paths = new HashSet<Path>();
+            map.put(key, paths);
+        }
+        paths.add(path);
+    }
+
+    private static void add(Map<String, Map<Object, Set<Path>>> map, String key, Object value, Path path) {
+        Map<Object, Set<Path>> byValue = map.get(key);
+        if (byValue == null) {
+            byValue = new HashMap<Object, Set<Path>>();
+            map.put(key, byValue);
+        }
+        Set<Path> paths = byValue.get(value);
+        if (paths == null) {
+            paths = new HashSet<Path>();
+            byValue.put(value, paths);
+        }
+        paths.add(path);
+    }
+
+    private static void remove(Map<String, Set<Path>> map, String key, Path path) {
+        Set<Path> paths = map.get(key);
+        if (paths != null && paths.remove(path) && paths.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static void remove(Map<String, Map<Object, Set<Path>>> map, Pair pair, Path path) {
+        Map<Object, Set<Path>> byValue = map.get(pair.key);
+        if (byValue == null) {
+            return;
+        }
+        Set<Path> paths = byValue.get(pair.value);
+        if (paths != null && paths.remove(path) && paths.isEmpty()) {
+            byValue.remove(pair.value);
+            if (byValue.isEmpty()) {
+                map.remove(pair.key);
+            }
+        }
+    }
+
+    /**
+     * The numeric values of a key, sorted, and the paths of the resources holding them.
+     */
+    private static final class NumericColumn {
+
+        private double[] values = new double[8];
+
+        private Path[] paths = new Path[8];
+
+        private int size;
+
+        private void add(double value, Path path) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                paths = Arrays.copyOf(paths, size * 2);
+            }
+            int i = upper(value);
+            System.arraycopy(values, i, values, i + 1, size - i);
+            System.arraycopy(paths, i, paths, i + 1, size - i);
+            values[i] = value;
+            paths[i] = path;
+            size++;
+        }
+
+        private boolean remove(double value, Path path) {
+            for (int i = lower(value); i < size && values[i] == value; i++) {
+                if (paths[i].equals(path)) {
+                    System.arraycopy(values, i + 1, values, i, size - i - 1);
+                    System.arraycopy(paths, i + 1, paths, i, size - i - 1);
+                    paths[--size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the position of the first value greater than or equal to the given bound
+         */
+        private int lower(double bound) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < bound) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the position of the first value greater than the given bound
+         */
+        private int upper(double bound) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] > bound) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+
+        private Set<Path> paths(int from, int to) {
+            Set<Path> result = new HashSet<Path>();
+            for (int i = from; i < to; i++) {
+                result.add(paths[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * What was indexed for a resource.
+     */
+    private static final class Entry {
+        private final List<String> keys = new ArrayList<String>();
+        private final List<String> unresolved = new ArrayList<String>();
+        private final List<Pair> values = new ArrayList<Pair>();
+        private final Set<Pair> elements = new HashSet<Pair>();
+    }
+
+    /**
+     * A key and a normalized value.
+     */
+    private static final class Pair {
+
+        private final String key;
+
+        private final Object value;
+
+        private Pair(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Pair && key.equals(((Pair) object).key)
+                    && value.equals(((Pair) object).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + value.hashCode();
+        }
+    }
+}
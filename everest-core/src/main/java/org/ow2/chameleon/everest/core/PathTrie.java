@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Path;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable trie indexing values by {@link Path}, one node per path element.
+ * <p>
+ * Updates never modify an existing trie: they return a new trie sharing all the untouched branches with the original
+ * one. A trie can therefore be read concurrently without any locking, lookups costing one map access per path element.
+ * </p>
+ *
+ * @param <V> the type of the indexed values
+ */
+public final class PathTrie<V> {
+
+    /**
+     * The empty trie.
+     */
+    @SuppressWarnings("unchecked")
+    private static final PathTrie EMPTY = new PathTrie(null, Collections.emptyMap());
+
+    /**
+     * The value bound to the path of this node, {@code null} if none.
+     */
+    private final V m_value;
+
+    /**
+     * The children of this node, indexed by path element. Never modified once the node is built.
+     */
+    private final Map<String, PathTrie<V>> m_children;
+
+    private PathTrie(V value, Map<String, PathTrie<V>> children) {
+        m_value = value;
+        m_children = children;
+    }
+
+    /**
+     * @return the empty trie
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PathTrie<V> empty() {
+        return (PathTrie<V>) EMPTY;
+    }
+
+    /**
+     * @return {@code true} if no value is bound in this trie
+     */
+    public boolean isEmpty() {
+        return m_value == null && m_children.isEmpty();
+    }
+
+    /**
+     * Gets the value bound to the given path.
+     *
+     * @param path the path
+     * @return the value bound to exactly {@code path}, {@code null} if none
+     */
+    public V get(Path path) {
+        PathTrie<V> node = this;
+        for (int i = 0; i < path.getCount(); i++) {
+            node = node.m_children.get(path.getElement(i));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.m_value;
+    }
+
+    /**
+     * Gets the value bound to the longest prefix of the given path.
+     *
+     * @param path the path
+     * @return the value bound to the deepest ancestor of {@code path} (or to {@code path} itself), {@code null} if none
+     */
+    public V getDeepest(Path path) {
+        PathTrie<V> node = this;
+        V deepest = m_value;
+        for (int i = 0; i < path.getCount(); i++) {
+            node = node.m_children.get(path.getElement(i));
+            if (node == null) {
+                break;
+            }
+            if (node.m_value != null) {
+                deepest = node.m_value;
+            }
+        }
+        return deepest;
+    }
+
+    /**
+     * Collects the values bound to all the prefixes of the given path.
+     *
+     * @param path   the path
+     * @param values the collection where the values bound to the ancestors of {@code path} (and to {@code path}
+     *               itself) are added, from the shallowest to the deepest
+     */
+    public void collect(Path path, Collection<? super V> values) {
+        PathTrie<V> node = this;
+        if (m_value != null) {
+            values.add(m_value);
+        }
+        for (int i = 0; i < path.getCount(); i++) {
+            node = node.m_children.get(path.getElement(i));
+            if (node == null) {
+                return;
+            }
+            if (node.m_value != null) {
+                values.add(node.m_value);
+            }
+        }
+    }
+
+    /**
+     * Binds a value to a path.
+     *
+     * @param path  the path
+     * @param value the value, must not be {@code null}
+     * @return a trie where {@code value} is bound to {@code path}, replacing any previous binding
+     */
+    public PathTrie<V> put(Path path, V value) {
+        if (value == null) {
+            throw new NullPointerException("null value");
+        }
+        return put(path, 0, value);
+    }
+
+    private PathTrie<V> put(Path path, int index, V value) {
+        if (index == path.getCount()) {
+            return new PathTrie<V>(value, m_children);
+        }
+        String element = path.getElement(index);
+        PathTrie<V> child = m_children.get(element);
+        if (child == null) {
+            child = empty();
+        }
+        Map<String, PathTrie<V>> children = new HashMap<String, PathTrie<V>>(m_children);
+        children.put(element, child.put(path, index + 1, value));
+        return new PathTrie<V>(m_value, children);
+    }
+
+    /**
+     * Unbinds the value bound to a path. Values bound to the descendants of the path are kept.
+     *
+     * @param path the path
+     * @return a trie where nothing is bound to {@code path}
+     */
+    public PathTrie<V> remove(Path path) {
+        PathTrie<V> trie = remove(path, 0);
+        return trie == null ? PathTrie.<V>empty() : trie;
+    }
+
+    /**
+     * @return the updated node, {@code null} if the node becomes useless.
+     */
+    private PathTrie<V> remove(Path path, int index) {
+        if (index == path.getCount()) {
+            return m_children.isEmpty() ? null : new PathTrie<V>(null, m_children);
+        }
+        String element = path.getElement(index);
+        PathTrie<V> child = m_children.get(element);
+        if (child == null) {
+            // Nothing bound there.
+            return this;
+        }
+        PathTrie<V> updated = child.remove(path, index + 1);
+        Map<String, PathTrie<V>> children = new HashMap<String, PathTrie<V>>(m_children);
+        if (updated == null) {
+            children.remove(element);
+        } else {
+            children.put(element, updated);
+        }
+        if (m_value == null && children.isEmpty()) {
+            return null;
+        }
+        return new PathTrie<V>(m_value, children);
+    }
+
+}
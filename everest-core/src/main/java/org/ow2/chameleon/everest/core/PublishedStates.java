@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The metadata last published for each resource, used to compute the deltas of the {@code UPDATED} events.
+ * <p>
+ * The cache is bounded: the least recently published resources are evicted first, and their next update is sent
+ * without delta. A capacity of {@literal 0} disables the cache.
+ * </p>
+ */
+final class PublishedStates {
+
+    private final Map<Path, ResourceMetadata> states = new LinkedHashMap<Path, ResourceMetadata>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, ResourceMetadata> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private volatile int capacity;
+
+    PublishedStates(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * @return {@literal true} if deltas are computed
+     */
+    boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Sets the maximum number of cached states, evicting the extra ones.
+     *
+     * @param capacity the new capacity, {@literal 0} to disable the cache
+     */
+    synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        if (states.size() > this.capacity) {
+            Iterator<Path> iterator = states.keySet().iterator();
+            while (states.size() > this.capacity) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Records the published state of a resource.
+     *
+     * @param path     the canonical path of the resource
+     * @param metadata its immutable metadata
+     * @return the delta against the previously published state, {@literal null} if it is unknown
+     */
+    MetadataDelta publish(Path path, ResourceMetadata metadata) {
+        ResourceMetadata previous;
+        synchronized (this) {
+            if (capacity == 0) {
+                return null;
+            }
+            previous = states.put(path, metadata);
+        }
+        return previous == null ? null : MetadataDelta.compute(previous, metadata);
+    }
+
+    /**
+     * Forgets the state of a deleted resource.
+     *
+     * @param path the canonical path of the resource
+     */
+    void remove(Path path) {
+        if (capacity == 0) {
+            // Nothing cached
+            return;
+        }
+        synchronized (this) {
+            states.remove(path);
+        }
+    }
+
+    /**
+     * @return the number of cached states
+     */
+    synchronized int size() {
+        return states.size();
+    }
+}
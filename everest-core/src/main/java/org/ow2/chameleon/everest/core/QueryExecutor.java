@@ -0,0 +1,389 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.impl.ResourceIterator;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates filters over resource trees and lists on a fork/join pool of daemon threads.
+ * <p>
+ * Trees are split at the collection boundaries: the members of the collections ({@code /osgi/bundles}), at depth
+ * {@literal 2} from {@code /}, are shared out, and their subtrees are evaluated in parallel. The domains and the
+ * collections above them are visited by the calling thread. A query started at or below a collection shares out the
+ * children of the resource it starts at. The members are split in halves recursively, each half being forked, until
+ * slices are small enough to be evaluated sequentially; idle threads steal the pending halves. Results are merged in
+ * the order of a sequential visit (depth-first pre-order for trees, list order for lists), so they do not depend on
+ * the scheduling.
+ * </p>
+ * <p>
+ * Queries with fewer than {@link #THRESHOLD} members to share out, or running with a parallelism of {@literal 1}, stay
+ * on the calling thread. Queries issued from a filter evaluated by the pool are forked in the same pool, as their
+ * joins let the waiting threads help.
+ * </p>
+ */
+public final class QueryExecutor {
+
+    /**
+     * The minimal number of resources to share out for a query to run in parallel.
+     */
+    public static final int THRESHOLD = 256;
+
+    /**
+     * The depth of the collections, whose members are shared out: the root is at depth {@literal 0}, the domains at
+     * depth {@literal 1}.
+     */
+    private static final int SPLIT_DEPTH = 2;
+
+    /**
+     * The number of slices per thread, so a thread finishing early steals some work.
+     */
+    private static final int SLICES_PER_THREAD = 4;
+
+    private static volatile int parallelism = Math.max(1, Integer.getInteger(Everest.QUERY_PARALLELISM,
+            Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The pool, lazily created.
+     */
+    private static volatile ForkJoinPool pool;
+
+    private QueryExecutor() {
+        // Utility class
+    }
+
+    /**
+     * Sets the number of threads evaluating the queries. The current pool is shut down, its running queries complete.
+     *
+     * @param threads the number of threads, {@literal 1} (or less) evaluates queries on the calling thread
+     */
+    public static synchronized void setParallelism(int threads) {
+        parallelism = Math.max(1, threads);
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return the number of threads evaluating the queries
+     */
+    public static int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param root   the root of a tree
+     * @param filter a filter
+     * @return the resources of the tree (the root included) accepted by the filter, in depth-first pre-order
+     */
+    public static List<Resource> filter(Resource root, ResourceFilter filter) {
+        // The top of the tree, with the members of the collections in place of their subtrees.
+        List<Object> parts = new ArrayList<Object>();
+        int splitDepth = Math.max(SPLIT_DEPTH, root.getPath().getCount());
+        int members = split(root, filter, splitDepth, parts);
+        if (!isParallel(members)) {
+            List<Resource> result = new ArrayList<Resource>();
+            for (Object part : parts) {
+                if (part instanceof Resource) {
+                    result.add((Resource) part);
+                } else {
+                    evaluate((List<?>) part, 0, ((List<?>) part).size(), filter, true, result);
+                }
+            }
+            return result;
+        }
+        return invoke(new Query(parts, filter, sliceSize(members)));
+    }
+
+    /**
+     * @param resources a list of resources, {@literal null} elements are skipped
+     * @param filter    a filter
+     * @return the resources of the list accepted by the filter, in the list order
+     */
+    public static List<Resource> filter(List<Resource> resources, ResourceFilter filter) {
+        if (!isParallel(resources.size())) {
+            List<Resource> result = new ArrayList<Resource>();
+            evaluate(resources, 0, resources.size(), filter, false, result);
+            return result;
+        }
+        return invoke(new Slice(resources, 0, resources.size(), filter, false, sliceSize(resources.size())));
+    }
+
+    /**
+     * Visits the top of a tree, down to the collections.
+     *
+     * @return the number of members of the visited collections
+     */
+    private static int split(Resource resource, ResourceFilter filter, int splitDepth, List<Object> parts) {
+        if (filter.accept(resource)) {
+            parts.add(resource);
+        }
+        List<Resource> children = resource.getResources();
+        if (children == null || children.isEmpty()) {
+            return 0;
+        }
+        if (resource.getPath().getCount() >= splitDepth) {
+            parts.add(children);
+            return children.size();
+        }
+        int members = 0;
+        for (Resource child : children) {
+            members += split(child, filter, splitDepth, parts);
+        }
+        return members;
+    }
+
+    private static boolean isParallel(int members) {
+        return parallelism > 1 && members >= THRESHOLD;
+    }
+
+    private static int sliceSize(int members) {
+        return Math.max(1, members / (parallelism * SLICES_PER_THREAD));
+    }
+
+    /**
+     * Runs a task in the pool, or in the current pool when called from one of its tasks.
+     */
+    private static List<Resource> invoke(ForkJoinTask<List<Resource>> task) {
+        ForkJoinPool current = getPool();
+        try {
+            if (ForkJoinTask.getPool() == current) {
+                return task.invoke();
+            }
+            // Joining from outside of the pool may run the task on the calling thread, its forks then leaking to the
+            // common pool: wait for a worker to run it instead.
+            Submission submission = new Submission(task);
+            current.execute(submission);
+            return submission.await();
+        } catch (RuntimeException e) {
+            throw original(e);
+        } catch (Error e) {
+            throw original(e);
+        }
+    }
+
+    /**
+     * The pool rethrows the failures of its threads as copies, caused by the original failure (or by a copy when
+     * rethrown by nested joins).
+     *
+     * @return the original failure
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T original(T failure) {
+        Throwable original = failure;
+        while (original.getCause() != null && original.getCause().getClass() == failure.getClass()) {
+            original = original.getCause();
+        }
+        return (T) original;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism, new WorkerFactory(), null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Adds the accepted resources of the given slice of a list, or of their subtrees, to the result.
+     */
+    private static void evaluate(List<?> resources, int from, int to, ResourceFilter filter, boolean subtrees,
+                                 List<Resource> result) {
+        for (int i = from; i < to; i++) {
+            Object member = resources.get(i);
+            if (member == null) {
+                continue;
+            }
+            if (!subtrees) {
+                if (filter.accept((Resource) member)) {
+                    result.add((Resource) member);
+                }
+                continue;
+            }
+            Iterator<Resource> iterator = new ResourceIterator((Resource) member);
+            while (iterator.hasNext()) {
+                Resource resource = iterator.next();
+                if (filter.accept(resource)) {
+                    result.add(resource);
+                }
+            }
+        }
+    }
+
+    /**
+     * The evaluation of a tree: the accepted resources of its top, and the collections whose members are shared out.
+     */
+    private static final class Query extends RecursiveTask<List<Resource>> {
+
+        private final List<Object> parts;
+
+        private final ResourceFilter filter;
+
+        private final int sliceSize;
+
+        private Query(List<Object> parts, ResourceFilter filter, int sliceSize) {
+            this.parts = parts;
+            this.filter = filter;
+            this.sliceSize = sliceSize;
+        }
+
+        @Override
+        protected List<Resource> compute() {
+            List<Object> forked = new ArrayList<Object>(parts.size());
+            for (Object part : parts) {
+                if (part instanceof Resource) {
+                    forked.add(part);
+                } else {
+                    List<?> members = (List<?>) part;
+                    forked.add(new Slice(members, 0, members.size(), filter, true, sliceSize).fork());
+                }
+            }
+            List<Resource> result = new ArrayList<Resource>();
+            for (Object part : forked) {
+                if (part instanceof Resource) {
+                    result.add((Resource) part);
+                } else {
+                    result.addAll(((Slice) part).join());
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Runs a task on a worker of the pool, and hands its outcome to the submitting thread.
+     */
+    private static final class Submission extends RecursiveAction {
+
+        private final ForkJoinTask<List<Resource>> task;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private List<Resource> result;
+
+        private Throwable failure;
+
+        private Submission(ForkJoinTask<List<Resource>> task) {
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                result = task.invoke();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private List<Resource> await() {
+            boolean interrupted = false;
+            while (done.getCount() > 0) {
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A slice of a collection or a list, split in halves until small enough.
+     */
+    private static final class Slice extends RecursiveTask<List<Resource>> {
+
+        private final List<?> resources;
+
+        private final int from;
+
+        private final int to;
+
+        private final ResourceFilter filter;
+
+        private final boolean subtrees;
+
+        private final int sliceSize;
+
+        private Slice(List<?> resources, int from, int to, ResourceFilter filter, boolean subtrees, int sliceSize) {
+            this.resources = resources;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.subtrees = subtrees;
+            this.sliceSize = sliceSize;
+        }
+
+        @Override
+        protected List<Resource> compute() {
+            if (to - from <= sliceSize) {
+                List<Resource> result = new ArrayList<Resource>();
+                evaluate(resources, from, to, filter, subtrees, result);
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            Slice first = new Slice(resources, from, middle, filter, subtrees, sliceSize);
+            Slice second = new Slice(resources, middle, to, filter, subtrees, sliceSize);
+            second.fork();
+            List<Resource> result = first.compute();
+            result.addAll(second.join());
+            return result;
+        }
+    }
+
+    /**
+     * Creates the daemon threads of the pool, named after it.
+     */
+    private static final class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("everest-query-" + count.incrementAndGet());
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceExtender;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the root resources and extenders bound to everest.
+ * <p>
+ * All the views exposed by a snapshot are computed when the snapshot is built, so reading them never allocates. Binding
+ * or unbinding a resource or an extender builds a new snapshot.
+ * </p>
+ */
+final class Registry {
+
+    /**
+     * The empty registry.
+     */
+    static final Registry EMPTY = new Registry(new LinkedHashMap<Path, Resource>(), PathTrie.<Resource>empty(),
+            Collections.<ResourceExtender>emptyList(), ExtenderIndex.EMPTY);
+
+    /**
+     * The root resources, indexed by canonical path, in binding order. Never modified once the snapshot is built.
+     */
+    private final LinkedHashMap<Path, Resource> m_roots;
+
+    /**
+     * The root resources, sorted by canonical path.
+     */
+    private final SortedMap<Path, Resource> m_sortedRoots;
+
+    /**
+     * The root resources, in binding order.
+     */
+    private final List<Resource> m_rootList;
+
+    /**
+     * The routing index of the root resources.
+     */
+    private final PathTrie<Resource> m_routes;
+
+    /**
+     * The extenders, in binding order.
+     */
+    private final List<ResourceExtender> m_extenders;
+
+    /**
+     * The index of the extenders, selecting the extenders that may extend a resource.
+     */
+    private final ExtenderIndex m_extenderIndex;
+
+    private Registry(LinkedHashMap<Path, Resource> roots, PathTrie<Resource> routes,
+                     List<ResourceExtender> extenders, ExtenderIndex extenderIndex) {
+        m_roots = roots;
+        m_sortedRoots = Collections.unmodifiableSortedMap(new TreeMap<Path, Resource>(roots));
+        m_rootList = Collections.unmodifiableList(new ArrayList<Resource>(roots.values()));
+        m_routes = routes;
+        m_extenders = extenders;
+        m_extenderIndex = extenderIndex;
+    }
+
+    private Registry(LinkedHashMap<Path, Resource> roots, PathTrie<Resource> routes,
+                     List<ResourceExtender> extenders) {
+        this(roots, routes, Collections.unmodifiableList(extenders),
+                new ExtenderIndex(extenders.toArray(new ResourceExtender[extenders.size()])));
+    }
+
+    /**
+     * @param resource the root resource to bind
+     * @return a copy of this registry where the given resource is bound, replacing any root resource with the same
+     * canonical path
+     */
+    Registry withRoot(Resource resource) {
+        LinkedHashMap<Path, Resource> roots = new LinkedHashMap<Path, Resource>(m_roots);
+        roots.put(resource.getCanonicalPath(), resource);
+        return new Registry(roots, m_routes.put(resource.getCanonicalPath(), resource), m_extenders,
+                m_extenderIndex.withoutCache());
+    }
+
+    /**
+     * @param resource the root resource to unbind
+     * @return a copy of this registry where no root resource is bound to the canonical path of the given resource
+     */
+    Registry withoutRoot(Resource resource) {
+        if (!m_roots.containsKey(resource.getCanonicalPath())) {
+            return this;
+        }
+        LinkedHashMap<Path, Resource> roots = new LinkedHashMap<Path, Resource>(m_roots);
+        roots.remove(resource.getCanonicalPath());
+        return new Registry(roots, m_routes.remove(resource.getCanonicalPath()), m_extenders,
+                m_extenderIndex.withoutCache());
+    }
+
+    /**
+     * @param extender the extender to bind
+     * @return a copy of this registry where the given extender is bound
+     */
+    Registry withExtender(ResourceExtender extender) {
+        List<ResourceExtender> extenders = new ArrayList<ResourceExtender>(m_extenders);
+        extenders.add(extender);
+        return new Registry(m_roots, m_routes, extenders);
+    }
+
+    /**
+     * @param extender the extender to unbind
+     * @return a copy of this registry where the given extender is not bound anymore
+     */
+    Registry withoutExtender(ResourceExtender extender) {
+        List<ResourceExtender> extenders = new ArrayList<ResourceExtender>(m_extenders);
+        if (!extenders.remove(extender)) {
+            return this;
+        }
+        return new Registry(m_roots, m_routes, extenders);
+    }
+
+    /**
+     * @return the unmodifiable map of the root resources, sorted by canonical path
+     */
+    SortedMap<Path, Resource> getSortedRoots() {
+        return m_sortedRoots;
+    }
+
+    /**
+     * @return the unmodifiable list of the root resources, in binding order
+     */
+    List<Resource> getRoots() {
+        return m_rootList;
+    }
+
+    /**
+     * @return the routing index of the root resources
+     */
+    PathTrie<Resource> getRoutes() {
+        return m_routes;
+    }
+
+    /**
+     * @return the unmodifiable list of the extenders, in binding order
+     */
+    List<ResourceExtender> getExtenders() {
+        return m_extenders;
+    }
+
+    /**
+     * @return the index of the extenders
+     */
+    ExtenderIndex getExtenderIndex() {
+        return m_extenderIndex;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.ow2.chameleon.everest.services.Action;
+import org.ow2.chameleon.everest.services.Path;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The request metrics of everest: count, error count and latency histogram for each action on each domain.
+ * <p>
+ * Recording a request only increments a few counters, without locking. The counters are striped by thread so
+ * concurrent requests rarely update the same counter. Latencies are recorded in a log-linear histogram (four buckets per
+ * power of two), so the reported percentiles are within 25% of the exact ones.
+ * </p>
+ */
+public final class RequestMetrics {
+
+    /**
+     * The domain of the requests targeting the everest root ({@code /}).
+     */
+    public static final String ROOT_DOMAIN = "/";
+
+    /**
+     * The domain shared by the requests that no root resource handles, so unknown paths do not create new counters.
+     */
+    public static final String UNKNOWN_DOMAIN = "_unknown";
+
+    /**
+     * The number of histogram buckets, covering latencies up to {@code 2^36} ns (about a minute). Longer requests are
+     * recorded in the last bucket.
+     */
+    private static final int BUCKETS = 36 * 4;
+
+    private static final int COUNT = 0;
+    private static final int ERRORS = 1;
+    private static final int TOTAL = 2;
+    private static final int HISTOGRAM = 3;
+    private static final int STRIPE_SIZE = HISTOGRAM + BUCKETS;
+
+    /**
+     * The number of stripes, a power of two.
+     */
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 8) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    /**
+     * The counters of each domain, indexed by action ordinal. Domains are the root resources requests are routed to,
+     * so the map is bounded by the number of roots.
+     */
+    private final ConcurrentMap<String, AtomicLongArray[]> domains = new ConcurrentHashMap<String, AtomicLongArray[]>();
+
+    /**
+     * Records a processed request.
+     *
+     * @param action   the action of the request
+     * @param domain   the domain the request was routed to, see {@link #getDomain(Path)}
+     * @param duration the processing time, in nanoseconds
+     * @param error    whether the request failed
+     */
+    public void record(Action action, String domain, long duration, boolean error) {
+        AtomicLongArray counters = getCounters(domain)[action.ordinal()];
+        int offset = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SIZE;
+        counters.incrementAndGet(offset + COUNT);
+        if (error) {
+            counters.incrementAndGet(offset + ERRORS);
+        }
+        counters.addAndGet(offset + TOTAL, duration);
+        counters.incrementAndGet(offset + HISTOGRAM + bucket(duration));
+    }
+
+    /**
+     * @return the domains with recorded requests, sorted
+     */
+    public Set<String> getDomains() {
+        return new TreeSet<String>(domains.keySet());
+    }
+
+    /**
+     * @param domain the domain
+     * @param action the action
+     * @return the current statistics of the requests with the given action on the given domain
+     */
+    public Statistics getStatistics(String domain, Action action) {
+        AtomicLongArray[] counters = domains.get(domain);
+        if (counters == null) {
+            return new Statistics(0, 0, 0, new long[BUCKETS]);
+        }
+        AtomicLongArray array = counters[action.ordinal()];
+        long count = 0, errors = 0, total = 0;
+        long[] histogram = new long[BUCKETS];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            int offset = stripe * STRIPE_SIZE;
+            count += array.get(offset + COUNT);
+            errors += array.get(offset + ERRORS);
+            total += array.get(offset + TOTAL);
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] += array.get(offset + HISTOGRAM + i);
+            }
+        }
+        return new Statistics(count, errors, total, histogram);
+    }
+
+    /**
+     * @param root the path of the root resource a request was routed to, {@literal null} if none
+     * @return the domain of the root resource, i.e. the first element of its path, {@link #ROOT_DOMAIN} for the
+     * everest root, or {@link #UNKNOWN_DOMAIN} if the request was not routed
+     */
+    public static String getDomain(Path root) {
+        if (root == null) {
+            return UNKNOWN_DOMAIN;
+        }
+        return root.getCount() == 0 ? ROOT_DOMAIN : root.getFirst();
+    }
+
+    private AtomicLongArray[] getCounters(String domain) {
+        AtomicLongArray[] counters = domains.get(domain);
+        if (counters == null) {
+            counters = new AtomicLongArray[Action.values().length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+            }
+            AtomicLongArray[] existing = domains.putIfAbsent(domain, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * @param duration a duration, in nanoseconds
+     * @return the index of the histogram bucket holding the given duration
+     */
+    static int bucket(long duration) {
+        if (duration < 4) {
+            return duration < 0 ? 0 : (int) duration;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(duration);
+        int sub = (int) (duration >>> (exponent - 2)) & 3;
+        return Math.min((exponent - 1) * 4 + sub, BUCKETS - 1);
+    }
+
+    /**
+     * @param bucket a bucket index
+     * @return the smallest duration, in nanoseconds, recorded in the given bucket
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        return (4L + bucket % 4) << (exponent - 2);
+    }
+
+    /**
+     * A snapshot of the statistics of a kind of request.
+     */
+    public static final class Statistics {
+
+        private final long count;
+        private final long errors;
+        private final long total;
+        private final long[] histogram;
+
+        private Statistics(long count, long errors, long total, long[] histogram) {
+            this.count = count;
+            this.errors = errors;
+            this.total = total;
+            this.histogram = histogram;
+        }
+
+        /**
+         * @return the number of requests
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the number of failed requests
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the mean processing time, in nanoseconds
+         */
+        public long getMean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return an estimate of the processing time of the given percentile, in nanoseconds. It is the upper bound of
+         * the histogram bucket holding the percentile.
+         */
+        public long getPercentile(double percentile) {
+            long recorded = 0;
+            for (long value : histogram) {
+                recorded += value;
+            }
+            if (recorded == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(recorded * percentile / 100d);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank && histogram[i] > 0) {
+                    return lowerBound(i + 1) - 1;
+                }
+            }
+            return lowerBound(histogram.length) - 1;
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.filters;
+
+import org.ow2.chameleon.everest.core.MetadataIndex;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+
+import java.util.*;
+
+/**
+ * Optimizes a tree of filters built by {@link ResourceFilters}, without changing the resources it accepts.
+ * <ul>
+ * <li>Constant operands are folded: {@code $or} and {@code $not} of constants become constants, and neutral
+ * operands are dropped</li>
+ * <li>Nested conjunctions and disjunctions are flattened, and double negations removed</li>
+ * <li>The operands of a conjunction or disjunction are sorted by cost, so cheap predicates (key existence, equality)
+ * are evaluated before the string and regular expression ones, and often make them unnecessary</li>
+ * </ul>
+ * The operands that may fail (the filters reading the children or the relations, the nested conjunctions,
+ * disjunctions and negations, and the filters not built by {@link ResourceFilters}) are kept in place: the operands
+ * are only sorted between them, so whether they are evaluated does not depend on the optimization.
+ * <p>
+ * Plans made of key existence, equality, membership and range filters can also be answered by a {@link MetadataIndex},
+ * see {@link #candidates(ResourceFilter, MetadataIndex)}: the queries over the subtrees covered by the index then only
+ * visit the candidates (see {@link org.ow2.chameleon.everest.core.IndexedQueries}), {@code $gt} and {@code $lt}
+ * included.
+ * </p>
+ */
+public class QueryPlanner {
+
+    private static final Comparator<ResourceFilter> BY_COST = new Comparator<ResourceFilter>() {
+        public int compare(ResourceFilter a, ResourceFilter b) {
+            int ca = ResourceFilters.cost(a);
+            int cb = ResourceFilters.cost(b);
+            return ca < cb ? -1 : (ca == cb ? 0 : 1);
+        }
+    };
+
+    private QueryPlanner() {
+        // Utility class
+    }
+
+    /**
+     * @param filter a filter
+     * @return an equivalent filter, cheaper to evaluate
+     */
+    public static ResourceFilter optimize(ResourceFilter filter) {
+        if (filter instanceof ResourceFilters.And) {
+            return optimizeAnd((ResourceFilters.And) filter);
+        } else if (filter instanceof ResourceFilters.Or) {
+            return optimizeOr((ResourceFilters.Or) filter);
+        } else if (filter instanceof ResourceFilters.Not) {
+            return optimizeNot((ResourceFilters.Not) filter);
+        }
+        return filter;
+    }
+
+    private static ResourceFilter optimizeAnd(ResourceFilters.And and) {
+        if (and.filters == null || and.filters.isEmpty()) {
+            return constant(and.empty);
+        }
+        List<ResourceFilter> operands = new ArrayList<ResourceFilter>();
+        for (ResourceFilter filter : and.filters) {
+            ResourceFilter optimized = optimize(filter);
+            if (optimized instanceof ResourceFilters.Constant) {
+                if (!((ResourceFilters.Constant) optimized).value) {
+                    return ResourceFilters.none();
+                }
+                // true is neutral
+            } else if (optimized instanceof ResourceFilters.And) {
+                // Already optimized, so not empty
+                operands.addAll(((ResourceFilters.And) optimized).filters);
+            } else {
+                operands.add(optimized);
+            }
+        }
+        if (operands.isEmpty()) {
+            return ResourceFilters.all();
+        }
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+        sortByCost(operands);
+        return new ResourceFilters.And(operands, true);
+    }
+
+    private static ResourceFilter optimizeOr(ResourceFilters.Or or) {
+        if (or.filters == null) {
+            return ResourceFilters.none();
+        }
+        List<ResourceFilter> operands = new ArrayList<ResourceFilter>();
+        for (ResourceFilter filter : or.filters) {
+            ResourceFilter optimized = optimize(filter);
+            if (optimized instanceof ResourceFilters.Constant) {
+                if (((ResourceFilters.Constant) optimized).value) {
+                    return ResourceFilters.all();
+                }
+                // false is neutral
+            } else if (optimized instanceof ResourceFilters.Or) {
+                operands.addAll(((ResourceFilters.Or) optimized).filters);
+            } else {
+                operands.add(optimized);
+            }
+        }
+        if (operands.isEmpty()) {
+            return ResourceFilters.none();
+        }
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+        sortByCost(operands);
+        return new ResourceFilters.Or(operands);
+    }
+
+    /**
+     * Sorts the runs of operands between the ones that may fail, which stay in place.
+     */
+    private static void sortByCost(List<ResourceFilter> operands) {
+        int from = 0;
+        for (int i = 0; i <= operands.size(); i++) {
+            if (i == operands.size() || ResourceFilters.cost(operands.get(i)) >= ResourceFilters.STRUCTURE) {
+                Collections.sort(operands.subList(from, i), BY_COST);
+                from = i + 1;
+            }
+        }
+    }
+
+    private static ResourceFilter optimizeNot(ResourceFilters.Not not) {
+        ResourceFilter optimized = optimize(not.filter);
+        if (optimized instanceof ResourceFilters.Constant) {
+            return constant(!((ResourceFilters.Constant) optimized).value);
+        }
+        if (optimized instanceof ResourceFilters.Not) {
+            return ((ResourceFilters.Not) optimized).filter;
+        }
+        return new ResourceFilters.Not(optimized);
+    }
+
+    /**
+     * Looks up the resources that may be accepted by a filter in a metadata index.
+     * <ul>
+     * <li>Key existence, equality and membership filters are looked up, and {@code $gt} and {@code $lt} filters are
+     * answered by the sorted numeric values</li>
+     * <li>A conjunction is answered if one of its operands is, by intersecting the answered operands</li>
+     * <li>A disjunction is answered if all its operands are</li>
+     * </ul>
+     *
+     * @param filter an optimized filter
+     * @param index  the index
+     * @return the canonical paths of the indexed resources that may be accepted by the filter, {@literal null} if the
+     * index cannot answer. The indexed resources that are not returned are rejected by the filter.
+     */
+    public static Set<Path> candidates(ResourceFilter filter, MetadataIndex index) {
+        if (filter instanceof ResourceFilters.Lookup) {
+            ResourceFilters.Lookup lookup = (ResourceFilters.Lookup) filter;
+            if (lookup.indexValue == null) {
+                return index.withKey(lookup.indexKey);
+            }
+            return lookup.indexElement ? index.withElement(lookup.indexKey, lookup.indexValue)
+                    : index.withValue(lookup.indexKey, lookup.indexValue);
+        } else if (filter instanceof ResourceFilters.Range) {
+            ResourceFilters.Range range = (ResourceFilters.Range) filter;
+            return range.greater ? index.greaterThan(range.indexKey, range.bound)
+                    : index.lowerThan(range.indexKey, range.bound);
+        } else if (filter instanceof ResourceFilters.Constant) {
+            return ((ResourceFilters.Constant) filter).value ? null : new HashSet<Path>();
+        } else if (filter instanceof ResourceFilters.And) {
+            List<ResourceFilter> operands = ((ResourceFilters.And) filter).filters;
+            if (operands == null || operands.isEmpty()) {
+                return null;
+            }
+            Set<Path> result = null;
+            for (ResourceFilter operand : operands) {
+                Set<Path> paths = candidates(operand, index);
+                if (paths == null) {
+                    continue;
+                }
+                if (result == null) {
+                    result = paths;
+                } else {
+                    result.retainAll(paths);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        } else if (filter instanceof ResourceFilters.Or) {
+            List<ResourceFilter> operands = ((ResourceFilters.Or) filter).filters;
+            if (operands == null) {
+                return null;
+            }
+            Set<Path> result = new HashSet<Path>();
+            for (ResourceFilter operand : operands) {
+                Set<Path> paths = candidates(operand, index);
+                if (paths == null) {
+                    return null;
+                }
+                result.addAll(paths);
+            }
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * @param filter a filter
+     * @return {@literal true} if the filter only reads the metadata or the path of the resource: its verdict on a
+     * resource can only change when this resource changes. Filters reading the relations or the children of the
+     * resources, and filters not built by {@link ResourceFilters}, are not local.
+     */
+    public static boolean isLocal(ResourceFilter filter) {
+        return filter != null && ResourceFilters.cost(filter) < ResourceFilters.STRUCTURE;
+    }
+
+    private static ResourceFilter constant(boolean value) {
+        return value ? ResourceFilters.all() : ResourceFilters.none();
+    }
+}
@@ -18,102 +18,81 @@ package org.ow2.chameleon.everest.filters;
 import org.ow2.chameleon.everest.services.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A static class giving a couple of common resource filters
+ * <p>
+ * The returned filters know their relative evaluation cost, and the logical ones expose their operands, so the
+ * {@link QueryPlanner} can optimize a tree of filters before evaluating it.
+ * </p>
  */
 public class ResourceFilters {
 
+    /**
+     * Costs of the filters, from the cheapest to the most expensive.
+     */
+    static final int CONSTANT = 0;
+    static final int KEY = 1;
+    static final int COMPARISON = 2;
+    static final int STRING = 3;
+    static final int REGEXP = 4;
+    static final int STRUCTURE = 5;
+    static final int UNKNOWN = 6;
+
+    private static final Constant ALL = new Constant(true);
+
+    private static final Constant NONE = new Constant(false);
+
     public static ResourceFilter all() {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                return true;
-            }
-        };
+        return ALL;
     }
 
     public static ResourceFilter none() {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                return false;
-            }
-        };
+        return NONE;
     }
 
-
-
+    /**
+     * @return {@literal true} if all the given filters accept the resource, {@literal true} if there is no filter
+     */
     public static ResourceFilter and(final ResourceFilter... filters) {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                for (ResourceFilter filter : filters) {
-                    if (!filter.accept(resource)) {
-                        return false;
-                    }
-                }
-                return true;
-            }
-        };
+        return new And(Arrays.asList(filters), true);
     }
 
+    /**
+     * @return {@literal true} if all the given filters accept the resource, {@literal false} if the list is
+     * {@literal null} or empty
+     */
     public static ResourceFilter and(final List<ResourceFilter> filters) {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                if (filters == null || filters.isEmpty()){
-                    return false;
-                }
-                for (ResourceFilter filter : filters) {
-                    if (!filter.accept(resource)) {
-                        return false;
-                    }
-                }
-                return true;
-            }
-        };
+        return new And(filters, false);
     }
 
     public static ResourceFilter or(final ResourceFilter... filters) {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                for (ResourceFilter filter : filters) {
-                    if (filter.accept(resource)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
+        return new Or(Arrays.asList(filters));
     }
 
     public static ResourceFilter or(final List<ResourceFilter> filters) {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                if (filters == null || filters.isEmpty()){
-                    return false;
-                }
-                for (ResourceFilter filter : filters) {
-                    if (filter.accept(resource)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        };
+        return new Or(filters);
     }
 
     public static ResourceFilter not(final ResourceFilter filter) {
-        return new ResourceFilter() {
-            public boolean accept(Resource resource) {
-                return !filter.accept(resource);
-            }
-        };
+        return new Not(filter);
+    }
+
+    /**
+     * @param filter a filter
+     * @return the relative cost of evaluating the given filter
+     */
+    static int cost(ResourceFilter filter) {
+        return filter instanceof Node ? ((Node) filter).cost() : UNKNOWN;
     }
 
     public static ResourceFilter isNotNull() {
-        return new ResourceFilter() {
+        return new Node(CONSTANT) {
             public boolean accept(Resource resource) {
                 return (resource == null);
             }
@@ -121,7 +100,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter hasCanonicalPath(final Path path) {
-        return new ResourceFilter() {
+        return new Node(COMPARISON) {
             public boolean accept(Resource resource) {
                 return resource.getCanonicalPath().equals(path);
             }
@@ -133,7 +112,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter hasPath(final Path path) {
-        return new ResourceFilter() {
+        return new Node(COMPARISON) {
             public boolean accept(Resource resource) {
                 return resource.getPath().equals(path)
                         || resource.getCanonicalPath().equals(path);
@@ -146,7 +125,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter greaterThan(final String metadataId,final double valueToCompare) {
-        return new ResourceFilter() {
+        return new Range(metadataId, valueToCompare, true) {
             public boolean accept(Resource resource) {
                 try {
                     Number value = resource.getMetadata().get(metadataId,Number.class);
@@ -161,7 +140,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter lowerThan(final String metadataId,final double valueToCompare) {
-        return new ResourceFilter() {
+        return new Range(metadataId, valueToCompare, false) {
             public boolean accept(Resource resource) {
                 try {
                     Number value = resource.getMetadata().get(metadataId,Number.class);
@@ -176,7 +155,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter equalsTo(final String metadataId,final double valueToCompare) {
-        return new ResourceFilter() {
+        return new Lookup(COMPARISON, metadataId, valueToCompare, false) {
             public boolean accept(Resource resource) {
                 try {
                     Number value = resource.getMetadata().get(metadataId,Number.class);
@@ -191,7 +170,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter equalsTo(final String metadataId,final String valueToCompare) {
-        return new ResourceFilter() {
+        return new Lookup(COMPARISON, metadataId, valueToCompare, false) {
             public boolean accept(Resource resource) {
                 try {
                     String value = resource.getMetadata().get(metadataId,String.class);
@@ -210,7 +189,7 @@ public class ResourceFilters {
     }
 
     public static <T> ResourceFilter keyExistWithType(final String metadataId,final Class<? extends T> clazz) {
-        return new ResourceFilter() {
+        return new Lookup(KEY, metadataId, null, false) {
             public boolean accept(Resource resource) {
                 try{
                     if( resource.getMetadata().get(metadataId,clazz) == null){
@@ -226,7 +205,7 @@ public class ResourceFilters {
     }
 
     public static  ResourceFilter stringStartWith(final String metadataId,final String stringToCompare) {
-        return new ResourceFilter() {
+        return new Node(STRING) {
             public boolean accept(Resource resource) {
                 try{
                     String string = resource.getMetadata().get(metadataId,String.class);
@@ -240,17 +219,22 @@ public class ResourceFilters {
 
     }
 
+    /**
+     * The pattern is compiled once, when the filter is created. An invalid pattern accepts no resource.
+     */
     public static  ResourceFilter regExp(final String metadataId,final String regExp) {
-        return new ResourceFilter() {
+        final Pattern pattern;
+        try {
+            pattern = Pattern.compile(regExp);
+        } catch (PatternSyntaxException e) {
+            return none();
+        }
+        return new Node(REGEXP) {
             public boolean accept(Resource resource) {
                 try{
-                    Pattern pattern;
-                    Matcher matcher;
-                    pattern = Pattern.compile(regExp);
                     String string = resource.getMetadata().get(metadataId,String.class);
                     if (string == null )return false;
-                    matcher = pattern.matcher(string);
-                    return  matcher.find();
+                    return  pattern.matcher(string).find();
                 }catch (Exception  e){
                     return false;
                 }
@@ -261,7 +245,7 @@ public class ResourceFilters {
     }
 
     public static  ResourceFilter stringEndWith(final String metadataId,final String stringToCompare) {
-        return new ResourceFilter() {
+        return new Node(STRING) {
             public boolean accept(Resource resource) {
                 try{
                     String string = resource.getMetadata().get(metadataId,String.class);
@@ -275,7 +259,7 @@ public class ResourceFilters {
     }
 
     public static  ResourceFilter stringContains(final String metadataId,final String stringToCompare) {
-        return new ResourceFilter() {
+        return new Node(STRING) {
             public boolean accept(Resource resource) {
                 try{
                     String string = resource.getMetadata().get(metadataId,String.class);
@@ -289,7 +273,7 @@ public class ResourceFilters {
     }
 
     public static  ResourceFilter empty(final String metadataId) {
-        return new ResourceFilter() {
+        return new Node(KEY) {
             public boolean accept(Resource resource) {
                 try{
                     Object obj = resource.getMetadata().get(metadataId,Object.class);
@@ -307,7 +291,7 @@ public class ResourceFilters {
 
 
     public static  ResourceFilter hasAtLeastChildren(final int numberMinOfChildren) {
-        return new ResourceFilter() {
+        return new Node(STRUCTURE) {
             public boolean accept(Resource resource) {
                 List<Resource> resourceList = resource.getResources();
                 if (resourceList.size() >= numberMinOfChildren){
@@ -321,7 +305,7 @@ public class ResourceFilters {
     }
 
     public static <T> ResourceFilter hasAtLeastRelations(final int numberMinOfRelations) {
-        return new ResourceFilter() {
+        return new Node(STRUCTURE) {
             public boolean accept(Resource resource) {
                 List<Relation> resourceList = resource.getRelations();
                 if (resourceList == null || resourceList.isEmpty()){
@@ -345,7 +329,7 @@ public class ResourceFilters {
 
 
     public static ResourceFilter isSubResourceOf(final Resource root) {
-        return new ResourceFilter() {
+        return new Node(STRUCTURE) {
             public boolean accept(Resource resource) {
                 List<Resource> resourceList = root.getResources();
                 if ( (resourceList == null) || (resourceList.isEmpty())){
@@ -358,7 +342,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter hasAtLeastRelationFilterMatch(final RelationFilter relationFilter) {
-        return new ResourceFilter() {
+        return new Node(STRUCTURE) {
             public boolean accept(Resource resource) {
                 List<Relation> resourceList = resource.getRelations();
                 if (resourceList == null || resourceList.isEmpty()){
@@ -378,7 +362,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter hasAtLeastRelationFilterMatch(final RelationFilter relationFilter,final int NumberMinOfRelationMatch) {
-        return new ResourceFilter() {
+        return new Node(STRUCTURE) {
             public boolean accept(Resource resource) {
                 List<Relation> resourceList = resource.getRelations();
                 if (resourceList == null || resourceList.isEmpty()){
@@ -403,7 +387,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter allRelationFilterMatch(final RelationFilter relationFilter) {
-        return new ResourceFilter() {
+        return new Node(STRUCTURE) {
             public boolean accept(Resource resource) {
                 List<Relation> resourceList = resource.getRelations();
                 if (resourceList == null || resourceList.isEmpty()){
@@ -417,7 +401,7 @@ public class ResourceFilters {
 
 
     public static ResourceFilter isDescendentOf( final Resource root) {
-        return new ResourceFilter() {
+        return new Node(COMPARISON) {
             public boolean accept(Resource resource) {
                 return resource.getPath().isDescendantOf(root.getPath());
             }
@@ -425,7 +409,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter arrayContains(final String metadataId,final String value) {
-        return new ResourceFilter() {
+        return new Lookup(COMPARISON, metadataId, value, true) {
             public boolean accept(Resource resource) {
                 try{
                     Collection<Object> collection = resource.getMetadata().get(metadataId,Collection.class);
@@ -446,7 +430,7 @@ public class ResourceFilters {
     }
 
     public static ResourceFilter arrayContains(final String metadataId, final double value) {
-        return new ResourceFilter() {
+        return new Lookup(COMPARISON, metadataId, value, true) {
             public boolean accept(Resource resource) {
                 try{
                     Collection<Object> collection = resource.getMetadata().get(metadataId,Collection.class);
@@ -468,4 +452,184 @@ public class ResourceFilters {
         };
 
     }
+
+    /**
+     * A filter knowing its relative cost.
+     */
+    abstract static class Node implements ResourceFilter {
+
+        private final int cost;
+
+        Node(int cost) {
+            this.cost = cost;
+        }
+
+        int cost() {
+            return cost;
+        }
+    }
+
+    /**
+     * A filter only accepting resources holding a metadata key, or a given value for this key, so it can be answered
+     * by a metadata index.
+     */
+    abstract static class Lookup extends Node {
+
+        final String indexKey;
+
+        /**
+         * The value, {@literal null} if the filter only requires the key.
+         */
+        final Object indexValue;
+
+        /**
+         * Whether the value is an element of a collection rather than the value itself.
+         */
+        final boolean indexElement;
+
+        Lookup(int cost, String key, Object value, boolean element) {
+            super(cost);
+            this.indexKey = key;
+            this.indexValue = value;
+            this.indexElement = element;
+        }
+    }
+
+    /**
+     * A filter only accepting resources whose numeric value for a metadata key is greater or lower than a bound, so
+     * it can be answered by a range index.
+     */
+    abstract static class Range extends Node {
+
+        final String indexKey;
+
+        final double bound;
+
+        /**
+         * Whether the values must be greater than the bound, or lower.
+         */
+        final boolean greater;
+
+        Range(String key, double bound, boolean greater) {
+            super(COMPARISON);
+            this.indexKey = key;
+            this.bound = bound;
+            this.greater = greater;
+        }
+    }
+
+    /**
+     * A filter accepting either all or no resources.
+     */
+    static final class Constant extends Node {
+
+        final boolean value;
+
+        private Constant(boolean value) {
+            super(CONSTANT);
+            this.value = value;
+        }
+
+        public boolean accept(Resource resource) {
+            return value;
+        }
+    }
+
+    /**
+     * The conjunction of filters.
+     */
+    static final class And extends Node {
+
+        final List<ResourceFilter> filters;
+
+        /**
+         * The result of an empty conjunction.
+         */
+        final boolean empty;
+
+        And(List<ResourceFilter> filters, boolean empty) {
+            super(UNKNOWN);
+            this.filters = filters;
+            this.empty = empty;
+        }
+
+        public boolean accept(Resource resource) {
+            if (filters == null || filters.isEmpty()) {
+                return empty;
+            }
+            for (ResourceFilter filter : filters) {
+                if (!filter.accept(resource)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int cost() {
+            return maxCost(filters);
+        }
+    }
+
+    /**
+     * The disjunction of filters, rejecting all resources if there is no filter.
+     */
+    static final class Or extends Node {
+
+        final List<ResourceFilter> filters;
+
+        Or(List<ResourceFilter> filters) {
+            super(UNKNOWN);
+            this.filters = filters;
+        }
+
+        public boolean accept(Resource resource) {
+            if (filters == null) {
+                return false;
+            }
+            for (ResourceFilter filter : filters) {
+                if (filter.accept(resource)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int cost() {
+            return maxCost(filters);
+        }
+    }
+
+    /**
+     * The negation of a filter.
+     */
+    static final class Not extends Node {
+
+        final ResourceFilter filter;
+
+        Not(ResourceFilter filter) {
+            super(UNKNOWN);
+            this.filter = filter;
+        }
+
+        public boolean accept(Resource resource) {
+            return !filter.accept(resource);
+        }
+
+        @Override
+        int cost() {
+            return ResourceFilters.cost(filter);
+        }
+    }
+
+    private static int maxCost(List<ResourceFilter> filters) {
+        int max = CONSTANT;
+        if (filters != null) {
+            for (ResourceFilter filter : filters) {
+                max = Math.max(max, cost(filter));
+            }
+        }
+        return max;
+    }
 }
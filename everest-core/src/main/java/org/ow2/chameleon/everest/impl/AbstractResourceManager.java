@@ -70,14 +70,18 @@ public abstract class AbstractResourceManager extends DefaultReadOnlyResource {
      * @return a list of relations
      */
     public List<Relation> getRelations() {
-        List<Relation> relations = new ArrayList<Relation>();
-        for (Resource resource : getResources()) {
-            int size = getCanonicalPath().getCount();
-            String name = resource.getCanonicalPath().getElements()[size];
-            relations.add(new DefaultRelation(resource.getCanonicalPath(), Action.READ, "everest:" + name,
-                    "Get " + name));
-        }
-        return relations;
+        return new ArrayList<Relation>(getChildRelations());
+    }
+
+    /**
+     * Adds the {@literal everest:<name>} relation to the given child.
+     */
+    @Override
+    protected void addChildRelations(Resource child, List<Relation> relations) {
+        int size = getCanonicalPath().getCount();
+        String name = child.getCanonicalPath().getElement(size);
+        relations.add(new DefaultRelation(child.getCanonicalPath(), Action.READ, "everest:" + name,
+                "Get " + name));
     }
 
 }
@@ -18,11 +18,16 @@ package org.ow2.chameleon.everest.impl;
 import org.ow2.chameleon.everest.internals.JSONUtils;
 import org.ow2.chameleon.everest.services.*;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Default request implementation.
+ * <p>
+ * The parameters are copied once, when the request is created, and exposed through an unmodifiable view. String
+ * parameters converted to another type by {@link #get(String, Class)} are converted once per request.
+ * </p>
  */
 public class DefaultRequest implements Request {
 
@@ -30,12 +35,21 @@ public class DefaultRequest implements Request {
     private final Path path;
     private final Map<String, Object> params;
 
+    /**
+     * The parameters converted from their string value, by name and type. Lazily created.
+     */
+    private Map<String, Map<Class<?>, Object>> conversions;
+
     public DefaultRequest(Action action, Path path, Map<String, ? extends Object> params) {
         this.action = action;
         this.path = path;
-        this.params = new HashMap<String, Object>();
-        if (params != null) {
-            this.params.putAll(params);
+        if (params == null || params.isEmpty()) {
+            this.params = Collections.emptyMap();
+        } else if (params instanceof ImmutableResourceMetadata) {
+            // Already immutable, no need to copy it.
+            this.params = (ImmutableResourceMetadata) params;
+        } else {
+            this.params = Collections.unmodifiableMap(new HashMap<String, Object>(params));
         }
     }
 
@@ -47,8 +61,11 @@ public class DefaultRequest implements Request {
         return action;
     }
 
+    /**
+     * @return the unmodifiable map of the parameters, always the same instance
+     */
     public Map<String, ? extends Object> parameters() {
-        return new HashMap<String, Object>(params);
+        return params;
     }
 
     public <T> T get(String key, Class<? extends T> clazz) {
@@ -63,13 +80,34 @@ public class DefaultRequest implements Request {
         } else {
             if (obj instanceof String) {
                 // Try to rebuild a bean from the String.
-                return JSONUtils.instantiate((String) obj, clazz);
+                return convert(key, (String) obj, clazz);
             }
             throw new IllegalArgumentException("The parameter '" + key + "' is not a '" + clazz.getName() + "' (found" +
                     " type: '" + obj.getClass().getName() + "')");
         }
     }
 
+    /**
+     * Builds a bean from a string parameter, or returns the bean built by a previous call.
+     */
+    private synchronized <T> T convert(String key, String value, Class<? extends T> clazz) {
+        if (conversions == null) {
+            conversions = new HashMap<String, Map<Class<?>, Object>>();
+        }
+        Map<Class<?>, Object> converted = conversions.get(key);
+        if (converted == null) {
+            converted = new HashMap<Class<?>, Object>(2);
+            conversions.put(key, converted);
+        }
+        if (converted.containsKey(clazz)) {
+            return clazz.cast(converted.get(clazz));
+        }
+        T bean = JSONUtils.instantiate(value, clazz);
+        // Failures (null) are cached too, so they are not retried (and logged) on each read.
+        converted.put(clazz, bean);
+        return bean;
+    }
+
     public static Request from(Relation relation, Map<String,
             Object> params) throws IllegalActionOnResourceException {
         // We create the request first, we will use it in error message
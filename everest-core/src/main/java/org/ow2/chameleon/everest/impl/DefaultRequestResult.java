@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.impl;
+
+import org.ow2.chameleon.everest.services.Request;
+import org.ow2.chameleon.everest.services.RequestResult;
+import org.ow2.chameleon.everest.services.Resource;
+
+/**
+ * Default implementation of request result.
+ */
+public class DefaultRequestResult implements RequestResult {
+
+    private final Request request;
+    private final Resource resource;
+    private final Exception error;
+
+    private DefaultRequestResult(Request request, Resource resource, Exception error) {
+        if (request == null) {
+            throw new NullPointerException("null request");
+        }
+        this.request = request;
+        this.resource = resource;
+        this.error = error;
+    }
+
+    /**
+     * @param request  the request
+     * @param resource the resource returned by the request
+     * @return the result of a successful request
+     */
+    public static DefaultRequestResult success(Request request, Resource resource) {
+        return new DefaultRequestResult(request, resource, null);
+    }
+
+    /**
+     * @param request the request
+     * @param error   the exception thrown by the request
+     * @return the result of a failed request
+     */
+    public static DefaultRequestResult failure(Request request, Exception error) {
+        if (error == null) {
+            throw new NullPointerException("null error");
+        }
+        return new DefaultRequestResult(request, null, error);
+    }
+
+    public Request getRequest() {
+        return request;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return request.action() + " " + request.path() + " => " + (error == null ? resource : error);
+    }
+}
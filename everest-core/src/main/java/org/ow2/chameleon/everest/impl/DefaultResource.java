@@ -15,12 +15,14 @@
 
 package org.ow2.chameleon.everest.impl;
 
-import org.ow2.chameleon.everest.filters.ResourceFilters;
+import org.ow2.chameleon.everest.core.IndexedQueries;
 import org.ow2.chameleon.everest.services.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static org.ow2.chameleon.everest.core.Everest.DEBUG_REQUEST;
 
 /**
  * Default resource implementation
@@ -32,6 +34,41 @@ public class DefaultResource implements Resource {
     private final ResourceMetadata metadata;
     private Relation[] relations;
 
+    /**
+     * The relations to this resource and its parent, computed once.
+     */
+    private volatile List<Relation> selfRelations;
+
+    /**
+     * The maximum number of parents whose last children change is remembered.
+     */
+    private static final int MAX_CHANGED_PARENTS = 4096;
+
+    /**
+     * Stamps the changes of children, see {@link #childrenChanged(Path)}.
+     */
+    private static final AtomicLong CHILDREN_CHANGES = new AtomicLong();
+
+    /**
+     * The stamp of the last children change, by canonical path of the parent.
+     */
+    private static final ConcurrentMap<Path, Long> CHANGED_PARENTS = new ConcurrentHashMap<Path, Long>();
+
+    /**
+     * The last stamp removed from {@link #CHANGED_PARENTS}, standing for the changes of the parents it does not hold.
+     */
+    private static volatile long forgottenChanges;
+
+    /**
+     * The memoized relations, {@literal null} until first computed.
+     */
+    private volatile RelationCache relationCache;
+
+    /**
+     * Incremented when the relations of this resource are invalidated.
+     */
+    private volatile int relationsVersion;
+
     public DefaultResource(Path path) {
         this(path, null);
     }
@@ -52,6 +89,7 @@ public class DefaultResource implements Resource {
 
     public DefaultResource setRelations(Relation... relations) {
         this.relations = relations;
+        invalidateRelations();
         return this;
     }
 
@@ -74,82 +112,199 @@ public class DefaultResource implements Resource {
         if (metadata != null) {
             return ImmutableResourceMetadata.of(metadata);
         } else {
-            return ImmutableResourceMetadata.of(Collections.<String, Object>emptyMap());
+            return ImmutableResourceMetadata.EMPTY;
         }
 
     }
 
     public List<Relation> getRelations() {
+        // The relations are memoized, but callers may modify the returned list.
+        return new ArrayList<Relation>(Arrays.asList(getRelationCache().all));
+    }
 
-        Set<Relation> rels = new HashSet<Relation>();
-        if (this.relations != null){
-            Collections.addAll(rels, this.relations);
+    /**
+     * @return the unmodifiable list of the relations to this resource ({@literal Self}) and to its parent
+     * ({@literal Parent}), computed once.
+     */
+    protected List<Relation> getSelfRelations() {
+        List<Relation> self = selfRelations;
+        if (self == null) {
+            List<Relation> list = new ArrayList<Relation>(2);
+            try {
+                list.add(new DefaultRelation(this.getCanonicalPath(), Action.READ, "Self", "Return the current resource \"" + this.getPath().getLast() + "\""));
+            } catch (IndexOutOfBoundsException e) {
+                list.add(new DefaultRelation(this.getCanonicalPath(), Action.READ, "Self", "Return the current resource \"/"));
+            }
+            if (this.getPath().getCount() != 0) {
+                try {
+                    list.add(new DefaultRelation(this.getPath().getParent(), Action.READ, "Parent", "Return the parent resource \"" + this.getPath().getParent().getLast() + "\""));
+                } catch (IndexOutOfBoundsException e) {
+                    list.add(new DefaultRelation(this.getPath().getParent(), Action.READ, "Parent", "Return the parent resource \"/\""));
+                }
+            }
+            self = Collections.unmodifiableList(list);
+            selfRelations = self;
         }
+        return self;
+    }
+
+    /**
+     * Gets the relations to the children of this resource, as created by
+     * {@link #addChildRelations(Resource, List)}.
+     * The relations are memoized, see {@link #invalidateRelations()}.
+     *
+     * @return the unmodifiable list of the relations to the children of this resource
+     */
+    protected List<Relation> getChildRelations() {
+        return getRelationCache().childRelations;
+    }
+
+    /**
+     * Creates the relations to a child of this resource. By default, a single {@literal Child:<name>} relation is
+     * added. Subclasses may override this method to add other relations. The created relations must only depend on
+     * the path of the child, since they are memoized.
+     *
+     * @param child     the child resource
+     * @param relations the list where the relations to the child are added
+     */
+    protected void addChildRelations(Resource child, List<Relation> relations) {
+        relations.add(new DefaultRelation(child.getPath(), Action.READ, "Child:" + child.getPath().getLast(), "Get the child  \"" + child.getPath().getLast() + "\""));
+    }
+
+    /**
+     * Invalidates the memoized relations of this resource, so they are computed again on next read.
+     * <p>
+     * The relations to the children are computed once, not each time they are read. Subclasses whose children change
+     * must call this method when they do, unless a {@code CREATED} or {@code DELETED} event is posted for the
+     * child (see {@link #childrenChanged(Path)}).
+     * </p>
+     */
+    protected synchronized void invalidateRelations() {
+        relationsVersion++;
+    }
 
-        try {
-            rels.add(new DefaultRelation(this.getCanonicalPath(), Action.READ, "Self", "Return the current resource \"" + this.getPath().getLast() + "\""));
-        } catch (IndexOutOfBoundsException e) {
-            rels.add(new DefaultRelation(this.getCanonicalPath(), Action.READ, "Self", "Return the current resource \"/"));
+    /**
+     * Invalidates the memoized relations of the resources at the given canonical path. Called when a
+     * {@code CREATED} or {@code DELETED} event is posted, as the children of the parent of its resource have changed.
+     *
+     * @param parent the canonical path of the resource whose children have changed
+     */
+    public static void childrenChanged(Path parent) {
+        long stamp = CHILDREN_CHANGES.incrementAndGet();
+        if (CHANGED_PARENTS.size() >= MAX_CHANGED_PARENTS) {
+            // Forget the changes, invalidating the relations of all the resources once.
+            forgottenChanges = stamp;
+            CHANGED_PARENTS.clear();
         }
+        CHANGED_PARENTS.put(parent, stamp);
+    }
 
-        if (!(this.getPath().toString().equalsIgnoreCase("/")))
-            try {
-                rels.add(new DefaultRelation(this.getPath().getParent(), Action.READ, "Parent", "Return the parent resource \"" + this.getPath().getParent().getLast() + "\""));
-            } catch (IndexOutOfBoundsException e) {
-                rels.add(new DefaultRelation(this.getPath().getParent(), Action.READ, "Parent", "Return the parent resource \"/\""));
+    /**
+     * @return the stamp of the last change of the children of the resources at the given canonical path
+     */
+    private static long lastChildrenChange(Path path) {
+        Long stamp = CHANGED_PARENTS.get(path);
+        return stamp == null ? forgottenChanges : stamp;
+    }
 
+    /**
+     * @return the memoized relations, recomputed if they have been invalidated
+     */
+    private RelationCache getRelationCache() {
+        long changes = lastChildrenChange(getCanonicalPath());
+        int version = relationsVersion;
+        RelationCache cache = relationCache;
+        if (cache != null && cache.changes == changes && cache.version == version) {
+            return cache;
+        }
+
+        // Invalidations happening meanwhile change the version, so this computation is not kept.
+        Relation[] explicit = this.relations;
+        List<Resource> children = getResources();
+        List<Relation> list = new ArrayList<Relation>(children == null ? 0 : children.size());
+        if (children != null) {
+            for (Resource child : children) {
+                addChildRelations(child, list);
             }
+        }
+        List<Relation> childRelations = Collections.unmodifiableList(list);
 
-        if (this.relations != null && ((getResources() != null) || !(getResources().isEmpty()))) {
+        Set<Relation> all = new LinkedHashSet<Relation>();
+        if (explicit != null) {
+            Collections.addAll(all, explicit);
+        }
+        all.addAll(getSelfRelations());
+        all.addAll(childRelations);
 
-            for (Resource resource : getResources()) {
-                Relation currentRelation = new DefaultRelation(resource.getPath(), Action.READ, "Child:" + resource.getPath().getLast(), "Get the child  \"" + resource.getPath().getLast() + "\"");
-                rels.add(currentRelation);
-            }
-            return new ArrayList<Relation>(rels);
-        } else if (this.relations == null && ((getResources() != null) || !(getResources().isEmpty()))) {
-            for (Resource resource : getResources()) {
-                Relation currentRelation = new DefaultRelation(resource.getPath(), Action.READ, "Child:" + resource.getPath().getLast(), "Get the child  \"" + resource.getPath().getLast() + "\"");
-                rels.add(currentRelation);
-            }
-            return new ArrayList<Relation>(rels);
-        } else if (this.relations != null && ((getResources() == null) || (getResources().isEmpty()))) {
+        cache = new RelationCache(changes, version, childRelations, all.toArray(new Relation[all.size()]));
+        relationCache = cache;
+        return cache;
+    }
 
-            return new ArrayList<Relation>(rels);
-        } else {
-            return new ArrayList<Relation>(rels);
+    /**
+     * The memoized relations of a resource, and the invalidation counts they were computed at.
+     */
+    private static final class RelationCache {
+
+        private final long changes;
+        private final int version;
+        private final List<Relation> childRelations;
+        private final Relation[] all;
+
+        private RelationCache(long changes, int version, List<Relation> childRelations, Relation[] all) {
+            this.changes = changes;
+            this.version = version;
+            this.childRelations = childRelations;
+            this.all = all;
         }
     }
 
     public DefaultResource setRelations(List<Relation> relations) {
-        this.relations = relations.toArray(new Relation[relations.size()]);
-        return this;
+        return setRelations(relations.toArray(new Relation[relations.size()]));
     }
 
     public List<Resource> getResources(ResourceFilter filter) {
-        List<Resource> resources = new ArrayList<Resource>();
-
-        for (Resource res : all()) {
-            if (filter.accept(res)) {
-                resources.add(res);
-            }
-        }
-        return resources;
+        return IndexedQueries.filter(this, filter);
     }
 
+    /**
+     * Gets a resource identified by its path.
+     * <p>
+     * The tree is descended along the given path: only the resources whose path or canonical path is an ancestor of
+     * the target are visited.
+     * </p>
+     *
+     * @param path the path
+     * @return the resource identified by the given path, {@literal null} if not found.
+     */
     public Resource getResource(String path) {
-        List<Resource> list = getResources(ResourceFilters.hasPath(path));
-        if (!list.isEmpty()) {
-            return list.get(0);
-        } else {
+        return lookup(this, Path.from(path));
+    }
+
+    private static Resource lookup(Resource resource, Path target) {
+        if (resource.getPath().equals(target) || resource.getCanonicalPath().equals(target)) {
+            return resource;
+        }
+        List<Resource> children = resource.getResources();
+        if (children == null) {
             return null;
         }
+        for (Resource child : children) {
+            if (child.getPath().isAncestorOf(target) || child.getCanonicalPath().isAncestorOf(target)
+                    || child.getPath().equals(target) || child.getCanonicalPath().equals(target)) {
+                Resource found = lookup(child, target);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
     }
 
     public void traverse(Resource resource, List<Resource> list) {
-        list.add(resource);
-        for (Resource res : resource.getResources()) {
-            traverse(res, list);
+        Iterator<Resource> iterator = new ResourceIterator(resource);
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
         }
     }
 
@@ -159,6 +314,14 @@ public class DefaultResource implements Resource {
         return all;
     }
 
+    /**
+     * @param maxDepth the depth of the deepest visited resources, or {@link ResourceIterator#UNLIMITED}
+     * @return a lazy iterator over this resource and its descendants, down to the given depth
+     */
+    public Iterator<Resource> iterator(int maxDepth) {
+        return new ResourceIterator(this, maxDepth);
+    }
+
     public <A> A adaptTo(Class<A> clazz) {
         return null;
     }
@@ -179,8 +342,7 @@ public class DefaultResource implements Resource {
      */
     public Resource process(Request request) throws IllegalActionOnResourceException, ResourceNotFoundException {
 
-        String debug = System.getProperty(DEBUG_REQUEST);
-        if (debug != null && debug.equalsIgnoreCase("true")) {
+        if (RequestTracing.isEnabled()) {
             //Trace
             System.out.println("Processing request " + request.action() + " " + request.path() + " by " +
                     getCanonicalPath());
@@ -317,16 +479,16 @@ public class DefaultResource implements Resource {
             this();
             this.path = resource.getPath();
             this.metadata = resource.getMetadata();
-            this.relations = resource.getRelations();
-            this.resources = resource.getResources();
+            this.relations = new ArrayList<Relation>(resource.getRelations());
+            this.resources = new ArrayList<Resource>(resource.getResources());
         }
 
         public Builder(Resource resource, ResourceFactory factory) {
             this(factory);
             this.path = resource.getPath();
             this.metadata = resource.getMetadata();
-            this.relations = resource.getRelations();
-            this.resources = resource.getResources();
+            this.relations = new ArrayList<Relation>(resource.getRelations());
+            this.resources = new ArrayList<Resource>(resource.getResources());
         }
 
         public Builder fromPath(String path) {
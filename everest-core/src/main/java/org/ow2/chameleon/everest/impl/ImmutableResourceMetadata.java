@@ -18,33 +18,178 @@ package org.ow2.chameleon.everest.impl;
 import org.ow2.chameleon.everest.services.Resource;
 import org.ow2.chameleon.everest.services.ResourceMetadata;
 
+import java.io.ObjectStreamException;
+import java.io.Serializable;
 import java.util.*;
 
 /**
  * We recommend resource metadata to be immutable.
  * Here is a basic implementation.
+ * <p>
+ * Instances are never modified once built, so they can be shared freely: {@link #of(Map)} returns its argument when
+ * it is already an {@link ImmutableResourceMetadata}, and a {@link Builder} created from existing metadata only
+ * records the overridden and added entries, looking up the other ones in the existing metadata.
+ * </p>
+ * <p>
+ * Entries are stored in two parallel arrays rather than in per-entry nodes. The key array is shared by all the metadata
+ * having the same keys in the same order, typically the metadata of the resources of the same type.
+ * </p>
+ * <p>
+ * Values that are expensive to compute can be set as {@link Lazy} values: they are computed on first read.
+ * </p>
  */
-public class ImmutableResourceMetadata  extends LinkedHashMap<String, Object> implements ResourceMetadata {
+public class ImmutableResourceMetadata extends AbstractMap<String, Object> implements ResourceMetadata, Serializable {
+
+    /**
+     * The empty metadata.
+     */
+    public static final ImmutableResourceMetadata EMPTY = new ImmutableResourceMetadata();
+
+    /**
+     * The maximum number of metadata layered on top of each other. Deeper metadata are flattened, to bound the cost of
+     * the lookups.
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * The metadata this one overrides, {@literal null} if this metadata holds all its entries.
+     */
+    private final ImmutableResourceMetadata parent;
+
+    /**
+     * The keys of the entries held by this metadata, in insertion order. Usually shared with the other metadata of the
+     * same resource type.
+     */
+    private final KeyTable keys;
+
+    /**
+     * The values of the entries held by this metadata.
+     */
+    private final Object[] values;
+
+    /**
+     * The number of entries, including the ones inherited from the parent.
+     */
+    private final int size;
+
+    /**
+     * The number of layers, {@literal 0} for a flat metadata.
+     */
+    private final int depth;
+
+    private transient Set<Entry<String, Object>> entrySet;
+
+    /**
+     * Creates an empty metadata. Prefer {@link #EMPTY}.
+     */
+    public ImmutableResourceMetadata() {
+        this(null, KeyTable.EMPTY, new Object[0]);
+    }
+
+    private ImmutableResourceMetadata(ImmutableResourceMetadata parent, KeyTable keys, Object[] values) {
+        this.parent = parent;
+        this.keys = keys;
+        this.values = values;
+        if (parent == null) {
+            this.size = keys.size();
+            this.depth = 0;
+        } else {
+            int count = parent.size;
+            for (int i = 0; i < keys.size(); i++) {
+                if (!parent.containsKey(keys.get(i))) {
+                    count++;
+                }
+            }
+            this.size = count;
+            this.depth = parent.depth + 1;
+        }
+    }
 
     public static ImmutableResourceMetadata of(ResourceMetadata metadata) {
         return of((Map<String, Object>) metadata);
     }
 
+    /**
+     * @param metadata the metadata
+     * @return the given metadata if it is already immutable, an immutable copy otherwise
+     */
     public static ImmutableResourceMetadata of(Map<String , ?> metadata) {
-        ImmutableResourceMetadata irm = new ImmutableResourceMetadata();
+        if (metadata instanceof ImmutableResourceMetadata) {
+            return (ImmutableResourceMetadata) metadata;
+        }
+        if (metadata.isEmpty()) {
+            return EMPTY;
+        }
+        return flat(metadata);
+    }
+
+    private static ImmutableResourceMetadata flat(Map<String, ?> metadata) {
+        String[] keys = new String[metadata.size()];
+        Object[] values = new Object[keys.length];
+        int i = 0;
         for (Map.Entry<String, ?> entry : metadata.entrySet()) {
-            irm._put(entry.getKey(), entry.getValue());
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
         }
-        return irm;
+        return new ImmutableResourceMetadata(null, KeyTable.of(keys, keys.length), values);
     }
 
-    /**
-     * A private delegate on the super put method.
-     * @param key the key
-     * @param value the value
-     */
-    private void _put(String key, Object value) {
-        super.put(key, value);
+    private int indexOf(Object key) {
+        return keys.indexOf(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        ImmutableResourceMetadata current = this;
+        while (current != null) {
+            int index = current.indexOf(key);
+            if (index >= 0) {
+                return resolve(current.values[index]);
+            }
+            current = current.parent;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        ImmutableResourceMetadata current = this;
+        while (current != null) {
+            if (current.indexOf(key) >= 0) {
+                return true;
+            }
+            current = current.parent;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
     }
 
     public <T> T get(String key, Class<? extends T> clazz) {
@@ -63,9 +208,42 @@ public class ImmutableResourceMetadata  extends LinkedHashMap<String, Object> im
 
     }
 
+    /**
+     * Copies the entries of this metadata to the given map, without computing the lazy values.
+     */
+    private void copyTo(Map<String, Object> map) {
+        if (parent != null) {
+            parent.copyTo(map);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), values[i]);
+        }
+    }
+
+    /**
+     * @return a flat copy of the entries of this metadata, where the lazy values are left as their {@link Lazy} holder
+     */
+    public Map<String, Object> getRawEntries() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        copyTo(map);
+        return map;
+    }
+
+    private static Object resolve(Object value) {
+        return value instanceof Lazy ? ((Lazy<?>) value).get() : value;
+    }
+
+    /**
+     * Serializes a flat copy of this metadata, where the lazy values are computed.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return flat(this);
+    }
+
     /**
      * Resource metadata are immutable, not supported.
      */
+    @Override
     public Object put(String key, Object value) {
         throw new UnsupportedOperationException("Immutable metadata");
     }
@@ -73,6 +251,7 @@ public class ImmutableResourceMetadata  extends LinkedHashMap<String, Object> im
     /**
      * Resource metadata are immutable, not supported.
      */
+    @Override
     public Object remove(Object key) {
         throw new UnsupportedOperationException("Immutable metadata");
     }
@@ -80,6 +259,7 @@ public class ImmutableResourceMetadata  extends LinkedHashMap<String, Object> im
     /**
      * Resource metadata are immutable, not supported.
      */
+    @Override
     public void putAll(Map m) {
         throw new UnsupportedOperationException("Immutable metadata");
     }
@@ -87,34 +267,219 @@ public class ImmutableResourceMetadata  extends LinkedHashMap<String, Object> im
     /**
      * Resource metadata are immutable, not supported.
      */
+    @Override
     public void clear() {
         throw new UnsupportedOperationException("Immutable metadata");
     }
 
+    /**
+     * Iterates over the entries of the parent, with their overridden value if any, then over the added entries.
+     */
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private final Iterator<Entry<String, Object>> inherited =
+                parent == null ? null : parent.entrySet().iterator();
+
+        private int index;
+
+        private Entry<String, Object> next;
+
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (inherited != null && inherited.hasNext()) {
+                Entry<String, Object> entry = inherited.next();
+                int overridden = indexOf(entry.getKey());
+                next = overridden < 0 ? entry
+                        : new SimpleImmutableEntry<String, Object>(entry.getKey(), resolve(values[overridden]));
+                return true;
+            }
+            while (index < keys.size()) {
+                String key = keys.get(index);
+                Object value = resolve(values[index]);
+                index++;
+                if (parent == null || !parent.containsKey(key)) {
+                    next = new SimpleImmutableEntry<String, Object>(key, value);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, Object> entry = next;
+            next = null;
+            return entry;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Immutable metadata");
+        }
+    }
+
+    /**
+     * A metadata value computed on first read, then memoized. Queries and serializations reading only some keys do not
+     * pay for the other ones.
+     *
+     * @param <T> the type of the value
+     */
+    public abstract static class Lazy<T> {
+
+        private volatile boolean computed;
+
+        private T value;
+
+        /**
+         * Computes the value. Called at most once.
+         *
+         * @return the value
+         */
+        protected abstract T compute();
+
+        /**
+         * @return {@literal true} if the value has already been computed
+         */
+        public final boolean isComputed() {
+            return computed;
+        }
+
+        /**
+         * @return the value, computed on first call
+         */
+        public final T get() {
+            if (!computed) {
+                synchronized (this) {
+                    if (!computed) {
+                        value = compute();
+                        computed = true;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Builds immutable metadata, possibly on top of existing metadata.
+     */
     public static class Builder {
 
-        Map<String, Object> accumulator = new LinkedHashMap<String, Object>();
+        /**
+         * Builders holding more entries index them, to avoid scanning the keys on each {@link #set(String, Object)}.
+         */
+        private static final int INDEX_THRESHOLD = 16;
+
+        /**
+         * The metadata being extended, {@literal null} if none.
+         */
+        private final ImmutableResourceMetadata base;
+
+        /**
+         * The keys of the entries set on this builder, in insertion order.
+         */
+        private String[] keys = new String[8];
 
-        public Builder() {}
+        /**
+         * The values of the entries set on this builder.
+         */
+        private Object[] values = new Object[8];
 
+        private int count;
+
+        /**
+         * The position of each key, {@literal null} until the builder holds more than {@link #INDEX_THRESHOLD} keys.
+         */
+        private Map<String, Integer> index;
+
+        public Builder() {
+            base = null;
+        }
+
+        /**
+         * Creates a builder extending the given metadata. The given metadata is not copied if it is immutable.
+         *
+         * @param metadata the metadata, may be {@literal null}
+         */
         public Builder(ResourceMetadata metadata) {
-            if (metadata != null) {
-                accumulator.putAll(metadata);
+            if (metadata != null && !metadata.isEmpty()) {
+                base = of(metadata);
+            } else {
+                base = null;
             }
         }
 
+        /**
+         * Sets an entry.
+         *
+         * @param k the key
+         * @param v the value. A {@link Lazy} value is only computed when the entry is read.
+         * @return this builder
+         */
         public Builder set(String k, Object v) {
-            accumulator.put(k ,v);
+            int position = indexOf(k);
+            if (position >= 0) {
+                values[position] = v;
+                return this;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            keys[count] = k;
+            values[count] = v;
+            if (index != null) {
+                index.put(k, count);
+            } else if (count == INDEX_THRESHOLD) {
+                index = new HashMap<String, Integer>();
+                for (int i = 0; i <= count; i++) {
+                    index.put(keys[i], i);
+                }
+            }
+            count++;
             return this;
         }
 
         public Builder putAll(Map<String, Object> map) {
-            accumulator.putAll(map);
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
             return this;
         }
 
+        private int indexOf(String key) {
+            if (index != null) {
+                Integer position = index.get(key);
+                return position == null ? -1 : position;
+            }
+            for (int i = 0; i < count; i++) {
+                String k = keys[i];
+                if (k == key || (k != null && k.equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
         public ImmutableResourceMetadata build() {
-            return of(accumulator);
+            if (count == 0) {
+                return base == null ? EMPTY : base;
+            }
+            if (base != null && (base.depth >= MAX_DEPTH || count * 2 > base.size())) {
+                // Layering would not save anything, or would make lookups too slow.
+                Map<String, Object> merged = new LinkedHashMap<String, Object>();
+                base.copyTo(merged);
+                for (int i = 0; i < count; i++) {
+                    merged.put(keys[i], values[i]);
+                }
+                return flat(merged);
+            }
+            // The key table may be shared, so it is built from a copy the builder never modifies.
+            return new ImmutableResourceMetadata(base, KeyTable.of(Arrays.copyOf(keys, count), count),
+                    Arrays.copyOf(values, count));
         }
 
     }
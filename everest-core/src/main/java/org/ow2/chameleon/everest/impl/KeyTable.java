@@ -0,0 +1,190 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.impl;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ordered keys of an {@link ImmutableResourceMetadata}.
+ * <p>
+ * Resources of the same type build metadata with the same keys, in the same order. Small key tables are interned, so
+ * all these metadata share a single table and only hold their values. The least recently used tables are evicted
+ * first, so tables built from dynamic keys do not fill the cache for good. Large tables carry an open-addressing index to
+ * find a key without scanning the table.
+ * </p>
+ */
+final class KeyTable implements Serializable {
+
+    /**
+     * The empty table.
+     */
+    static final KeyTable EMPTY = new KeyTable(new String[0], false);
+
+    /**
+     * Tables with more keys are not interned: they usually hold dynamic keys (headers, properties...).
+     */
+    private static final int MAX_INTERNED_KEYS = 32;
+
+    /**
+     * The maximum number of interned tables, bounding the memory used by the cache.
+     */
+    static final int MAX_INTERNED_TABLES = 1024;
+
+    /**
+     * Tables with more keys are indexed.
+     */
+    private static final int INDEX_THRESHOLD = 8;
+
+    /**
+     * The interned tables, in access order. Guarded by itself.
+     */
+    private static final Map<KeyTable, KeyTable> INTERNED = new LinkedHashMap<KeyTable, KeyTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KeyTable, KeyTable> eldest) {
+            return size() > MAX_INTERNED_TABLES;
+        }
+    };
+
+    private final String[] keys;
+
+    private final int hash;
+
+    /**
+     * The open-addressing index, mapping the hash of a key to its position plus one. {@literal null} for small tables.
+     */
+    private final transient int[] index;
+
+    private KeyTable(String[] keys, boolean indexed) {
+        this.keys = keys;
+        this.hash = Arrays.hashCode(keys);
+        this.index = indexed && keys.length > INDEX_THRESHOLD ? buildIndex(keys) : null;
+    }
+
+    /**
+     * @param keys  the keys, distinct. The array must not be modified afterwards.
+     * @param count the number of keys to take from the array
+     * @return a table holding the {@code count} first keys of the given array, shared if possible
+     */
+    static KeyTable of(String[] keys, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        String[] copy = keys.length == count ? keys : Arrays.copyOf(keys, count);
+        if (count > MAX_INTERNED_KEYS) {
+            return new KeyTable(copy, true);
+        }
+        // The probe is not indexed: it is dropped if the table is already interned.
+        KeyTable probe = new KeyTable(copy, false);
+        synchronized (INTERNED) {
+            KeyTable interned = INTERNED.get(probe);
+            if (interned != null) {
+                return interned;
+            }
+        }
+        // Index outside the lock, another thread may intern the same table meanwhile.
+        KeyTable table = new KeyTable(copy, true);
+        synchronized (INTERNED) {
+            KeyTable interned = INTERNED.get(table);
+            if (interned != null) {
+                return interned;
+            }
+            INTERNED.put(table, table);
+        }
+        return table;
+    }
+
+    private static int[] buildIndex(String[] keys) {
+        int[] index = new int[Integer.highestOneBit(keys.length * 2 - 1) << 1];
+        int mask = index.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            int slot = spread(keys[i]) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = i + 1;
+        }
+        return index;
+    }
+
+    private static int spread(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the number of keys
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param i a position
+     * @return the key at the given position
+     */
+    String get(int i) {
+        return keys[i];
+    }
+
+    /**
+     * @param key a key
+     * @return the position of the given key, {@literal -1} if the table does not hold it
+     */
+    int indexOf(Object key) {
+        if (index == null) {
+            for (int i = 0; i < keys.length; i++) {
+                String k = keys[i];
+                if (k == key || (k != null && k.equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        int slot = spread(key) & mask;
+        int position;
+        while ((position = index[slot]) != 0) {
+            String k = keys[position - 1];
+            if (k == key || (k != null && k.equals(key))) {
+                return position - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof KeyTable && hash == ((KeyTable) object).hash
+                && Arrays.equals(keys, ((KeyTable) object).keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Rebuilds the index, and shares the table again, on deserialization.
+     */
+    private Object readResolve() throws ObjectStreamException {
+        return of(keys, keys.length);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.impl;
+
+import static org.ow2.chameleon.everest.core.Everest.DEBUG_REQUEST;
+
+/**
+ * Whether the requests processed by the resources are dumped to {@code System.out}.
+ * <p>
+ * The flag is initialized from the {@code everest.debug.request} system property, and updated by the configuration of
+ * everest. It lives here rather than in the everest core, so processing a request does not load (and initialize) the
+ * core classes.
+ * </p>
+ */
+public final class RequestTracing {
+
+    private static volatile boolean enabled = Boolean.getBoolean(DEBUG_REQUEST);
+
+    private RequestTracing() {
+        // Utility class
+    }
+
+    /**
+     * @return {@literal true} if the processed requests are dumped
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param debug whether the processed requests are dumped
+     */
+    public static void setEnabled(boolean debug) {
+        enabled = debug;
+    }
+
+}
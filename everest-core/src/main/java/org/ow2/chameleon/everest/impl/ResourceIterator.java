@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.impl;
+
+import org.ow2.chameleon.everest.services.Resource;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates lazily over a resource tree, in depth-first pre-order (a resource comes before its children).
+ * <p>
+ * The children of a resource are only requested once the resource has been returned and the iteration moves on, so
+ * stopping the iteration early avoids visiting the rest of the tree.
+ * </p>
+ */
+public class ResourceIterator implements Iterator<Resource> {
+
+    /**
+     * The maximum depth meaning the whole tree is visited.
+     */
+    public static final int UNLIMITED = -1;
+
+    private final int maxDepth;
+
+    /**
+     * The iterators over the children of the resources being visited, the deepest last.
+     */
+    private final List<Iterator<Resource>> stack = new ArrayList<Iterator<Resource>>();
+
+    /**
+     * The next resource to return, {@literal null} if not fetched yet.
+     */
+    private Resource next;
+
+    /**
+     * The last returned resource, whose children are not visited yet.
+     */
+    private Resource expand;
+
+    /**
+     * The depth of {@link #expand}.
+     */
+    private int expandDepth;
+
+    /**
+     * Creates an iterator over the whole tree rooted at the given resource.
+     *
+     * @param root the root of the tree
+     */
+    public ResourceIterator(Resource root) {
+        this(root, UNLIMITED);
+    }
+
+    /**
+     * Creates an iterator over the tree rooted at the given resource, down to the given depth.
+     *
+     * @param root     the root of the tree
+     * @param maxDepth the depth of the deepest visited resources ({@literal 0} visits only the root, {@literal 1} the
+     *                 root and its children...), or {@link #UNLIMITED}
+     */
+    public ResourceIterator(Resource root, int maxDepth) {
+        this.next = root;
+        this.maxDepth = maxDepth;
+    }
+
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (expand != null) {
+            if (maxDepth < 0 || expandDepth < maxDepth) {
+                List<Resource> children = expand.getResources();
+                if (children != null && !children.isEmpty()) {
+                    stack.add(children.iterator());
+                }
+            }
+            expand = null;
+        }
+        while (!stack.isEmpty()) {
+            Iterator<Resource> top = stack.get(stack.size() - 1);
+            if (top.hasNext()) {
+                next = top.next();
+                return true;
+            }
+            stack.remove(stack.size() - 1);
+        }
+        return false;
+    }
+
+    public Resource next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Resource resource = next;
+        next = null;
+        expand = resource;
+        expandDepth = stack.size();
+        return resource;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Resource trees cannot be modified through their iterator");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.managers.everest;
+
+import org.ow2.chameleon.everest.core.EventJournal;
+import org.ow2.chameleon.everest.impl.DefaultReadOnlyResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Request;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resource exposing the journal of the resource events.
+ * <p>
+ * Reading this resource with the {@code from} parameter returns the journaled events whose sequence number is greater
+ * than or equal to {@code from}, at most {@code max} of them (100 by default). The {@code resync} entry is
+ * {@literal true} if some of the requested events were dropped from the journal: the client then has to re-read the
+ * resources it follows. Without parameter, only the sequence numbers are returned.
+ * </p>
+ */
+public class EventsResource extends DefaultReadOnlyResource {
+
+    public static final String EVENTS_PATH = "/everest/events";
+
+    /**
+     * The default maximum number of returned events.
+     */
+    public static final int DEFAULT_MAX = 100;
+
+    private final EventJournal journal;
+
+    public EventsResource(EventJournal journal) {
+        super(EVENTS_PATH);
+        this.journal = journal;
+    }
+
+    @Override
+    public ResourceMetadata getMetadata() {
+        return new ImmutableResourceMetadata.Builder()
+                .set("first", journal.getFirstSequence())
+                .set("last", journal.getLastSequence())
+                .set("capacity", journal.getCapacity())
+                .build();
+    }
+
+    @Override
+    public Resource read(Request request) {
+        Long from = request.get("from", Long.class);
+        if (from == null) {
+            return this;
+        }
+        Integer max = request.get("max", Integer.class);
+        // Sequence numbers start at 1
+        long start = Math.max(1, from);
+        long last = journal.getLastSequence();
+        List<EventJournal.Entry> entries = journal.read(start, max == null ? DEFAULT_MAX : Math.max(1, max));
+        List<ResourceMetadata> events = new ArrayList<ResourceMetadata>(entries.size());
+        for (EventJournal.Entry entry : entries) {
+            events.add(new ImmutableResourceMetadata.Builder()
+                    .set("sequence", entry.getSequence())
+                    .set("eventType", entry.getType().toString())
+                    .set("canonicalPath", entry.getPath().toString())
+                    .build());
+        }
+        // Some events were dropped if the first returned event is not the requested one.
+        boolean resync = entries.isEmpty() ? start <= last : entries.get(0).getSequence() > start;
+        ResourceMetadata metadata = new ImmutableResourceMetadata.Builder(getMetadata())
+                .set("from", from)
+                .set("resync", resync)
+                .set("events", events)
+                .build();
+        return new DefaultReadOnlyResource(Path.from(EVENTS_PATH), metadata);
+    }
+}
@@ -28,6 +28,8 @@ import java.util.*;
  *     /everest <- root
  *          /domains <- domain list
  *              /domain <- domain metadata
+ *          /metrics <- request metrics
+ *          /events <- event journal
  * </pre>
  *
  * TODO How to resource-ify extenders
@@ -50,6 +52,8 @@ public class EverestRootResource extends AbstractResourceManager {
         } catch (IllegalResourceException e) {
             // TODO Log.
         }
+        list.add(new MetricsResource(everest.getMetrics(), everest.getEventCoalescer()));
+        list.add(new EventsResource(everest.getEventJournal()));
         return list;
     }
 
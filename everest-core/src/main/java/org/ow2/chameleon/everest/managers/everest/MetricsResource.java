@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.managers.everest;
+
+import org.ow2.chameleon.everest.core.EventCoalescer;
+import org.ow2.chameleon.everest.core.RequestMetrics;
+import org.ow2.chameleon.everest.impl.DefaultReadOnlyResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Action;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+/**
+ * Resource exposing the request metrics of everest.
+ * <p>
+ * The metadata holds an entry per domain, mapping each action to the count, error count, mean and percentiles of
+ * the processing time of its requests. Times are in microseconds. The requests that no root resource handles are
+ * counted under {@code _unknown}.
+ * </p>
+ * <p>
+ * The {@code __events} entry holds the counters of the event coalescer.
+ * </p>
+ */
+public class MetricsResource extends DefaultReadOnlyResource {
+
+    public static final String METRICS_PATH = "/everest/metrics";
+
+    /**
+     * The metadata key of the event counters.
+     */
+    public static final String EVENTS = "__events";
+
+    private final RequestMetrics metrics;
+
+    private final EventCoalescer coalescer;
+
+    public MetricsResource(RequestMetrics metrics, EventCoalescer coalescer) {
+        super(METRICS_PATH);
+        this.metrics = metrics;
+        this.coalescer = coalescer;
+    }
+
+    @Override
+    public ResourceMetadata getMetadata() {
+        ImmutableResourceMetadata.Builder builder = new ImmutableResourceMetadata.Builder();
+        for (String domain : metrics.getDomains()) {
+            ImmutableResourceMetadata.Builder actions = new ImmutableResourceMetadata.Builder();
+            for (Action action : Action.values()) {
+                RequestMetrics.Statistics statistics = metrics.getStatistics(domain, action);
+                if (statistics.getCount() == 0) {
+                    continue;
+                }
+                actions.set(action.toString(), new ImmutableResourceMetadata.Builder()
+                        .set("count", statistics.getCount())
+                        .set("errors", statistics.getErrors())
+                        .set("mean", toMicros(statistics.getMean()))
+                        .set("p50", toMicros(statistics.getPercentile(50)))
+                        .set("p95", toMicros(statistics.getPercentile(95)))
+                        .set("p99", toMicros(statistics.getPercentile(99)))
+                        .build());
+            }
+            builder.set(domain, actions.build());
+        }
+        builder.set(EVENTS, new ImmutableResourceMetadata.Builder()
+                .set("window", coalescer.getWindow())
+                .set("received", coalescer.getReceived())
+                .set("posted", coalescer.getPosted())
+                .set("coalesced", coalescer.getCoalesced())
+                .set("collapsed", coalescer.getCollapsed())
+                .set("pending", coalescer.getPending())
+                .build());
+        return builder.build();
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.query;
+
+import org.ow2.chameleon.everest.services.EverestService;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The compiled queries, cached by query text.
+ * <p>
+ * Parsing a query builds its filters, pre-compiling their regular expressions, and optimizes them (see
+ * {@link org.ow2.chameleon.everest.filters.QueryPlanner}). The resulting filter is stateless, so it is shared by
+ * all the users of the same query.
+ * </p>
+ */
+public class QueryPlans {
+
+    /**
+     * The maximum number of cached plans.
+     */
+    private static final int MAX_PLANS = 256;
+
+    /**
+     * The plans, the least recently used being evicted first.
+     */
+    private static final Map<String, Plan> PLANS = new LinkedHashMap<String, Plan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+            return size() > MAX_PLANS;
+        }
+    };
+
+    private QueryPlans() {
+        // Utility class
+    }
+
+    /**
+     * @param query   the query
+     * @param everest the everest service, used by the relation filters
+     * @return the filter of the given query
+     * @throws ParseException if the query is invalid
+     */
+    public static ResourceFilter compile(String query, EverestService everest) throws ParseException {
+        Plan plan;
+        synchronized (PLANS) {
+            plan = PLANS.get(query);
+        }
+        if (plan != null && plan.everest == everest) {
+            return plan.filter;
+        }
+        ResourceFilter filter = new QueryFilter(query, everest).input();
+        synchronized (PLANS) {
+            PLANS.put(query, new Plan(everest, filter));
+        }
+        return filter;
+    }
+
+    /**
+     * A compiled query, and the everest service its relation filters use.
+     */
+    private static final class Plan {
+
+        private final EverestService everest;
+
+        private final ResourceFilter filter;
+
+        private Plan(EverestService everest, ResourceFilter filter) {
+            this.everest = everest;
+            this.filter = filter;
+        }
+    }
+}
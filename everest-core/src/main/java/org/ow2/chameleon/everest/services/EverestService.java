@@ -15,9 +15,47 @@
 
 package org.ow2.chameleon.everest.services;
 
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Everest entry point.
  */
 public interface EverestService {
     Resource process(Request request) throws IllegalActionOnResourceException, ResourceNotFoundException;
+
+    /**
+     * Processes a request asynchronously.
+     * <p>
+     * The returned future fails with an {@link java.util.concurrent.ExecutionException} wrapping the exception that
+     * {@link #process(Request)} would have thrown. Cancelling the future interrupts the request if it is running.
+     * </p>
+     *
+     * @param request the request
+     * @return the future result of the request
+     */
+    Future<Resource> processAsync(Request request);
+
+    /**
+     * Processes a request asynchronously, cancelling it if it has not completed within the given time.
+     *
+     * @param request the request
+     * @param timeout the maximum time to process the request, no timeout if {@code <= 0}
+     * @param unit    the unit of {@code timeout}
+     * @return the future result of the request
+     */
+    Future<Resource> processAsync(Request request, long timeout, TimeUnit unit);
+
+    /**
+     * Processes several requests in a single call.
+     * <p>
+     * Requests are processed sequentially, in order. The failure of a request does not prevent the next ones from
+     * being processed: it is reported in its result.
+     * </p>
+     *
+     * @param requests the requests
+     * @return the results of the requests, in the order of the requests
+     */
+    List<RequestResult> processBatch(List<Request> requests);
 }
@@ -15,50 +15,107 @@
 
 package org.ow2.chameleon.everest.services;
 
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.WeakHashMap;
 
 /**
  * An object that is used to locate a resource.
+ * <p>
+ * Paths are immutable. The head, tail and parent of a path are views sharing the elements of the original path, so
+ * navigating through a path never copies its elements. The string representation of a path is only built when needed.
+ * Paths parsed by {@link #from(String)} are interned: parsing the same path name again returns the same instance, as
+ * long as it is in use.
+ * </p>
  */
 public class Path implements Iterable<String>, Comparable<Path> {
 
     /**
      * The root path.
      */
-    private static final Path ROOT = new Path(new String[0], "/");
+    private static final Path ROOT = new Path(new String[0], 0, 0, "/");
 
     /**
      * The path separator
      */
     public static final String SEPARATOR = "/";
 
+    private static final char SEPARATOR_CHAR = '/';
+
+    /**
+     * The number of stripes of the interning cache, a power of two.
+     */
+    private static final int CACHE_STRIPES = 16;
+
+    /**
+     * The interning cache of parsed paths, indexed by path name. Entries vanish when their path is not used anymore.
+     * The cache is striped to limit the contention between threads parsing paths.
+     */
+    @SuppressWarnings("unchecked")
+    private static final Map<String, WeakReference<Path>>[] CACHE = new Map[CACHE_STRIPES];
+
+    static {
+        for (int i = 0; i < CACHE_STRIPES; i++) {
+            CACHE[i] = new WeakHashMap<String, WeakReference<Path>>();
+        }
+    }
+
+    /**
+     * The elements of this path are {@code m_elements[m_offset]} to {@code m_elements[m_offset + m_count - 1]}.
+     * The array may be shared with other paths, it is never modified.
+     */
+    private final String[] m_elements;
+
+    /**
+     * The index of the first element of this path in {@code m_elements}.
+     */
+    private final int m_offset;
+
     /**
      * The number of elements in this path.
      */
     private final int m_count;
 
     /**
-     * The elements of this path.
+     * The hash code of this path, i.e. the hash code of its string representation.
      */
-    private final String[] m_elements;
+    private final int m_hash;
 
     /**
-     * The string representation of this path.
+     * The string representation of this path, lazily computed.
      */
-    private final String m_string;
+    private String m_string;
 
     /**
      * Create a new path from the given elements and string representation.
      *
-     * @param elements the elements of the path
-     * @param string   the string representation of the path
+     * @param elements the array holding the elements of the path, not copied
+     * @param offset   the index of the first element of the path in {@code elements}
+     * @param count    the number of elements of the path
+     * @param string   the string representation of the path, {@code null} to compute it on demand
      */
-    private Path(String[] elements, String string) {
+    private Path(String[] elements, int offset, int count, String string) {
         m_elements = elements;
-        m_count = m_elements.length;
+        m_offset = offset;
+        m_count = count;
         m_string = string;
+        if (string != null) {
+            m_hash = string.hashCode();
+        } else {
+            // Same as the hash code of the string representation, computed without building it.
+            int hash = count == 0 ? SEPARATOR_CHAR : 0;
+            for (int i = offset; i < offset + count; i++) {
+                hash = 31 * hash + SEPARATOR_CHAR;
+                String element = elements[i];
+                for (int j = 0; j < element.length(); j++) {
+                    hash = 31 * hash + element.charAt(j);
+                }
+            }
+            m_hash = hash;
+        }
     }
 
     // SIMPLE GETTERS
@@ -67,7 +124,7 @@ public class Path implements Iterable<String>, Comparable<Path> {
      * @return all the elements of this path
      */
     public String[] getElements() {
-        return m_elements.clone();
+        return Arrays.copyOfRange(m_elements, m_offset, m_offset + m_count);
     }
 
     /**
@@ -85,14 +142,34 @@ public class Path implements Iterable<String>, Comparable<Path> {
      * @throws IndexOutOfBoundsException if {@code index} is negative, or {@code index}  is greater than or equal to the number of elements
      */
     public String getElement(int index) throws IndexOutOfBoundsException {
-        return m_elements[index];
+        if (index < 0 || index >= m_count) {
+            throw new IndexOutOfBoundsException("index: " + index + ", count: " + m_count);
+        }
+        return m_elements[m_offset + index];
     }
 
     /**
      * @return an iterator over the elements of this path.
      */
     public Iterator<String> iterator() {
-        return Collections.unmodifiableList(Arrays.asList(m_elements)).iterator();
+        return new Iterator<String>() {
+            private int m_next = 0;
+
+            public boolean hasNext() {
+                return m_next < m_count;
+            }
+
+            public String next() {
+                if (m_next >= m_count) {
+                    throw new NoSuchElementException();
+                }
+                return m_elements[m_offset + m_next++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Paths are immutable");
+            }
+        };
     }
 
     // STRUCTURE GETTERS
@@ -112,7 +189,7 @@ public class Path implements Iterable<String>, Comparable<Path> {
      * @throws IndexOutOfBoundsException if this path is the root path
      */
     public String getFirst() {
-        return m_elements[0];
+        return getElement(0);
     }
 
     /**
@@ -120,47 +197,43 @@ public class Path implements Iterable<String>, Comparable<Path> {
      * @throws IndexOutOfBoundsException if this path is the root path
      */
     public String getLast() {
-        return m_elements[m_count-1];
+        return getElement(m_count - 1);
     }
 
     /**
      * Get the head of this path.
      *
      * @param count the number of head elements to return
-     * @return TODO
+     * @return the path made of the {@code count} first elements of this path
      * @throws IndexOutOfBoundsException if this path contains less than {@code level} elements
      */
     public Path getHead(int count) {
-        if (count == 0) {
+        if (count < 0 || count > m_count) {
+            throw new IndexOutOfBoundsException("count: " + count + ", path count: " + m_count);
+        } else if (count == 0) {
             return ROOT;
+        } else if (count == m_count) {
+            return this;
         }
-        String[] elements = new String[count];
-        int endIndex = 0;
-        for (int i = 0; i < count; i++) {
-            elements[i] = m_elements[i];
-            endIndex += elements[i].length() + 1;
-        }
-        return new Path(elements, m_string.substring(0, endIndex));
+        return new Path(m_elements, m_offset, count, null);
     }
 
     /**
      * Get the tail of this path.
      *
      * @param count the number of tail elements to return
-     * @return TODO
+     * @return the path made of the {@code count} last elements of this path
      * @throws IndexOutOfBoundsException if this path contains less than {@code level} elements
      */
     public Path getTail(int count) {
-        if (count == 0) {
+        if (count < 0 || count > m_count) {
+            throw new IndexOutOfBoundsException("count: " + count + ", path count: " + m_count);
+        } else if (count == 0) {
             return ROOT;
+        } else if (count == m_count) {
+            return this;
         }
-        String[] elements = new String[count];
-        int beginIndex = m_string.length();
-        for (int i = 0; i < count; i++) {
-            elements[i] = m_elements[m_count - count + i];
-            beginIndex -= elements[i].length() + 1;
-        }
-        return new Path(elements, m_string.substring(beginIndex, m_string.length()));
+        return new Path(m_elements, m_offset + m_count - count, count, null);
     }
 
     public Path add(Path path) {
@@ -170,9 +243,9 @@ public class Path implements Iterable<String>, Comparable<Path> {
             return this;
         }
         String[] elements = new String[m_count + path.m_count];
-        System.arraycopy(m_elements, 0, elements, 0, m_count);
-        System.arraycopy(path.m_elements, 0, elements, m_count, path.m_count);
-        return new Path(elements, m_string + path.m_string);
+        System.arraycopy(m_elements, m_offset, elements, 0, m_count);
+        System.arraycopy(path.m_elements, path.m_offset, elements, m_count, path.m_count);
+        return new Path(elements, 0, elements.length, null);
     }
 
     public Path addElements(String... elements) {
@@ -183,14 +256,9 @@ public class Path implements Iterable<String>, Comparable<Path> {
         if (path.m_count == 0) {
             return this;
         }
-        if (path.m_count > m_count) {
+        if (path.m_count > m_count || !startsWith(path)) {
             throw new IllegalArgumentException();
         }
-        for (int i = 0; i < path.m_count; i++) {
-            if (!m_elements[i].equals(path.m_elements[i])) {
-                throw new IllegalArgumentException();
-            }
-        }
         return getTail(m_count - path.m_count);
     }
 
@@ -202,12 +270,7 @@ public class Path implements Iterable<String>, Comparable<Path> {
             // Cannot be an ancestor with more elements
             return false;
         }
-        for (int i = 0; i < m_count; i++) {
-            if (!m_elements[i].equals(path.m_elements[i])) {
-                return false;
-            }
-        }
-        return true;
+        return path.startsWith(this);
     }
 
     public boolean isDescendantOf(Path path) {
@@ -221,8 +284,22 @@ public class Path implements Iterable<String>, Comparable<Path> {
             // Cannot be an descendant with less elements
             return false;
         }
-        for (int i = 0; i < path.m_count; i++) {
-            if (!m_elements[i].equals(path.m_elements[i])) {
+        return startsWith(path);
+    }
+
+    /**
+     * @param prefix a path with at most as many elements as this path
+     * @return {@code true} if the first elements of this path are the elements of {@code prefix}
+     */
+    private boolean startsWith(Path prefix) {
+        if (m_elements == prefix.m_elements && m_offset == prefix.m_offset) {
+            // Views on the same elements.
+            return true;
+        }
+        for (int i = 0; i < prefix.m_count; i++) {
+            String element = m_elements[m_offset + i];
+            String other = prefix.m_elements[prefix.m_offset + i];
+            if (element != other && !element.equals(other)) {
                 return false;
             }
         }
@@ -234,27 +311,68 @@ public class Path implements Iterable<String>, Comparable<Path> {
             throw new NullPointerException("null pathName");
         }
 
+        Map<String, WeakReference<Path>> cache = CACHE[pathName.hashCode() & (CACHE_STRIPES - 1)];
+        synchronized (cache) {
+            WeakReference<Path> reference = cache.get(pathName);
+            Path path = reference == null ? null : reference.get();
+            if (path != null) {
+                return path;
+            }
+        }
+
+        Path path = parse(pathName);
+        if (path != ROOT) {
+            synchronized (cache) {
+                cache.put(pathName, new WeakReference<Path>(path));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Parses a path name.
+     *
+     * @param pathName the path name
+     * @return the parsed path
+     * @throws IllegalArgumentException if the path name is not valid
+     */
+    private static Path parse(String pathName) {
         // Path names MUST be absolute
         if (!pathName.startsWith(SEPARATOR)) {
             throw new IllegalArgumentException("invalid pathName: " + pathName);
         }
 
-        // Remove the leading slash so it won't disturb the path analysis.
-        String tmp = pathName.substring(1);
-        if (tmp.isEmpty()) {
+        int length = pathName.length();
+        if (length == 1) {
             // This is the root.
             return ROOT;
         }
 
-        // Cut the path into elements.
-        String[] elements = tmp.split(SEPARATOR);
+        // Count the elements, checking that there are no empty element (caused by double slash) and that there is no
+        // trailing slash.
+        int count = 1;
+        for (int i = 1; i < length; i++) {
+            if (pathName.charAt(i) == SEPARATOR_CHAR) {
+                if (pathName.charAt(i - 1) == SEPARATOR_CHAR || i == length - 1) {
+                    throw new IllegalArgumentException("invalid pathName: " + pathName);
+                }
+                count++;
+            }
+        }
 
-        // Check that there are no empty element (caused by double slash) and that there is no trailing slash
-        if (tmp.endsWith(SEPARATOR) || Arrays.asList(elements).contains("")) {
-            throw new IllegalArgumentException("invalid pathName: " + pathName);
+        // Cut the path into elements.
+        String[] elements = new String[count];
+        int begin = 1;
+        for (int i = 0; i < count; i++) {
+            int end = pathName.indexOf(SEPARATOR_CHAR, begin);
+            if (end == -1) {
+                end = length;
+            }
+            elements[i] = pathName.substring(begin, end);
+            begin = end + 1;
         }
 
-        return new Path(elements, pathName);
+        return new Path(elements, 0, count, pathName);
     }
 
     public static Path fromElements(String... elements) {
@@ -266,17 +384,13 @@ public class Path implements Iterable<String>, Comparable<Path> {
         }
 
         // Check that no element contains the path separator
-        // Meanwhile, build the string representation of the path
-        StringBuilder sb = new StringBuilder();
         for (String e : elements) {
             if (e.contains(SEPARATOR) || e.isEmpty()) {
                 throw new IllegalArgumentException("invalid path element: " + e);
             }
-            sb.append(SEPARATOR);
-            sb.append(e);
         }
 
-        return new Path(elements, sb.toString());
+        return new Path(elements, 0, elements.length, null);
     }
 
 
@@ -284,12 +398,22 @@ public class Path implements Iterable<String>, Comparable<Path> {
 
     @Override
     public String toString() {
-        return m_string;
+        String string = m_string;
+        if (string == null) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = m_offset; i < m_offset + m_count; i++) {
+                sb.append(SEPARATOR_CHAR);
+                sb.append(m_elements[i]);
+            }
+            string = sb.toString();
+            m_string = string;
+        }
+        return string;
     }
 
     @Override
     public int hashCode() {
-        return m_string.hashCode();
+        return m_hash;
     }
 
     @Override
@@ -299,10 +423,11 @@ public class Path implements Iterable<String>, Comparable<Path> {
         } else if (!(that instanceof Path)) {
             return false;
         }
-        return m_string.equals(((Path) that).m_string);
+        Path path = (Path) that;
+        return m_hash == path.m_hash && m_count == path.m_count && startsWith(path);
     }
 
     public int compareTo(Path that) {
-        return m_string.compareTo(that.m_string);
+        return toString().compareTo(that.toString());
     }
 }
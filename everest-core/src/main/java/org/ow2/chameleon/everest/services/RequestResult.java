@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.services;
+
+/**
+ * The outcome of one request of a batch.
+ */
+public interface RequestResult {
+
+    /**
+     * @return the processed request.
+     */
+    Request getRequest();
+
+    /**
+     * @return {@literal true} if the request succeeded, {@literal false} if it failed.
+     */
+    boolean isSuccess();
+
+    /**
+     * @return the resource returned by the request, {@literal null} if the request failed.
+     */
+    Resource getResource();
+
+    /**
+     * @return the exception thrown by the request, {@literal null} if the request succeeded.
+     */
+    Exception getError();
+
+}
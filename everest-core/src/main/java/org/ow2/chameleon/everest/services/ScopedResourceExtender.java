@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.services;
+
+/**
+ * A resource extender declaring the scope of the resources it may extend.
+ * <p>
+ * Everest indexes scoped extenders by scope, and only evaluates their filter on the resources within their scope. The
+ * scope is read once, when the extender is bound, so it must not change afterwards.
+ * </p>
+ */
+public interface ScopedResourceExtender extends ResourceExtender {
+
+    /**
+     * @return the path of the resource subtree this extender may extend (the resource at this path included), or
+     * {@literal null} if the extender is not restricted to a subtree.
+     */
+    Path getScope();
+
+    /**
+     * @return the type of the resources this extender may extend, or {@literal null} if the extender is not restricted
+     * to a type.
+     */
+    Class<? extends Resource> getResourceType();
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+import org.ow2.chameleon.everest.core.Everest;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceEvent;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.*;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the incremental processing of the subscriptions.
+ */
+public class TestIncrementalSubscription {
+
+    private final Everest everest = new Everest();
+
+    private final Device root = new Device("/devices", null);
+
+    private final Recorder listener = new Recorder();
+
+    private EverestClient client;
+
+    @Before
+    public void setUp() {
+        root.children.add(new Device("/devices/a", "ACTIVE"));
+        root.children.add(new Device("/devices/b", "STOPPED"));
+        everest.bindRootResource(root);
+        client = new EverestClient(everest);
+    }
+
+    @After
+    public void tearDown() {
+        everest.stop();
+    }
+
+    @Test
+    public void testIncrementalChanges() {
+        List<Resource> initial = client.subscribe(listener, "{State:\"ACTIVE\"}").retrieve();
+        assertThat(initial).hasSize(1);
+        Device a = (Device) root.children.get(0);
+        a.metadataReads = 0;
+
+        // b becomes active
+        ((Device) root.children.get(1)).state = "ACTIVE";
+        post(ResourceEvent.UPDATED, "/devices/b");
+        assertThat(listener.added).containsExactly("/devices/b");
+        assertThat(listener.removed).isEmpty();
+        assertThat(listener.result).hasSize(2);
+        // Only the changed resource was evaluated
+        assertThat(a.metadataReads).isEqualTo(0);
+
+        // An update not changing the result is not notified
+        post(ResourceEvent.UPDATED, "/devices/a");
+        assertThat(listener.notifications).isEqualTo(1);
+
+        // A new active device
+        root.children.add(new Device("/devices/c", "ACTIVE"));
+        post(ResourceEvent.CREATED, "/devices/c");
+        assertThat(listener.added).containsExactly("/devices/c");
+
+        // a is deleted
+        root.children.remove(0);
+        post(ResourceEvent.DELETED, "/devices/a");
+        assertThat(listener.added).isEmpty();
+        assertThat(listener.removed).containsExactly("/devices/a");
+        assertThat(listener.result).hasSize(2);
+    }
+
+    @Test
+    public void testCreatingAParentAddsItsChildren() {
+        client.subscribe(listener, "{State:\"ACTIVE\"}");
+        Device hub = new Device("/devices/hub", null);
+        hub.children.add(new Device("/devices/hub/x", "ACTIVE"));
+        hub.children.add(new Device("/devices/hub/y", "STOPPED"));
+        root.children.add(hub);
+        // Only the parent posts an event
+        post(ResourceEvent.CREATED, "/devices/hub");
+        assertThat(listener.added).containsExactly("/devices/hub/x");
+        assertThat(listener.result).hasSize(2);
+    }
+
+    @Test
+    public void testUpdatingAParentEvaluatesItsChildren() {
+        Device hub = new Device("/devices/hub", null);
+        hub.children.add(new Device("/devices/hub/x", "ACTIVE"));
+        hub.children.add(new Device("/devices/hub/y", "STOPPED"));
+        root.children.add(hub);
+        client.subscribe(listener, "{State:\"ACTIVE\"}");
+
+        // Only the parent posts an event: x stopped, y started
+        ((Device) hub.children.get(0)).state = "STOPPED";
+        ((Device) hub.children.get(1)).state = "ACTIVE";
+        post(ResourceEvent.UPDATED, "/devices/hub");
+        assertThat(listener.added).containsExactly("/devices/hub/y");
+        assertThat(listener.removed).containsExactly("/devices/hub/x");
+
+        // y is removed silently
+        hub.children.remove(1);
+        post(ResourceEvent.UPDATED, "/devices/hub");
+        assertThat(listener.added).isEmpty();
+        assertThat(listener.removed).containsExactly("/devices/hub/y");
+        assertThat(listener.result).hasSize(1);
+    }
+
+    @Test
+    public void testDeletingAParentRemovesItsChildren() {
+        client.subscribe(listener, "{State:\"ACTIVE\"}");
+        root.children.clear();
+        post(ResourceEvent.DELETED, "/devices");
+        assertThat(listener.removed).containsExactly("/devices/a");
+        assertThat(listener.result).isNull();
+    }
+
+    private void post(ResourceEvent type, String path) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("eventType", type.toString());
+        properties.put("canonicalPath", path);
+        client.handleEvent(new Event("everest" + path, properties));
+    }
+
+    /**
+     * A device, with a state.
+     */
+    private static class Device extends DefaultResource {
+
+        private final List<Resource> children = new ArrayList<Resource>();
+
+        private String state;
+
+        private int metadataReads;
+
+        private Device(String path, String state) {
+            super(Path.from(path));
+            this.state = state;
+        }
+
+        @Override
+        public ResourceMetadata getMetadata() {
+            metadataReads++;
+            ImmutableResourceMetadata.Builder builder = new ImmutableResourceMetadata.Builder();
+            if (state != null) {
+                builder.set("State", state);
+            }
+            return builder.build();
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            return new ArrayList<Resource>(children);
+        }
+    }
+
+    /**
+     * Records the notifications.
+     */
+    private static class Recorder implements IncrementalEverestListener {
+
+        private List<String> added = new ArrayList<String>();
+
+        private List<String> removed = new ArrayList<String>();
+
+        private List<Resource> result;
+
+        private int notifications;
+
+        public void matchesChanged(List<Resource> added, List<Resource> removed) {
+            this.added = paths(added);
+            this.removed = paths(removed);
+            notifications++;
+        }
+
+        public void getNewResult(List<Resource> resource) {
+            this.result = resource;
+        }
+
+        private static List<String> paths(List<Resource> resources) {
+            List<String> paths = new ArrayList<String>();
+            for (Resource resource : resources) {
+                paths.add(resource.getCanonicalPath().toString());
+            }
+            return paths;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the coalescing of the resource events.
+ */
+public class TestEventCoalescer {
+
+    private final List<String> posted = new ArrayList<String>();
+    private final CountDownLatch flushed = new CountDownLatch(1);
+
+    private final EventCoalescer coalescer = new EventCoalescer(new EventCoalescer.Sink() {
+        public void post(ResourceEvent type, Resource resource, String topic, long sequence) {
+            posted.add(type + " " + topic + " " + sequence);
+            flushed.countDown();
+        }
+    }, 60000);
+
+    @After
+    public void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void testMergeRules() {
+        assertThat(EventCoalescer.merge(ResourceEvent.UPDATED, ResourceEvent.UPDATED)).isEqualTo(ResourceEvent.UPDATED);
+        assertThat(EventCoalescer.merge(ResourceEvent.CREATED, ResourceEvent.UPDATED)).isEqualTo(ResourceEvent.CREATED);
+        assertThat(EventCoalescer.merge(ResourceEvent.CREATED, ResourceEvent.DELETED)).isNull();
+        assertThat(EventCoalescer.merge(ResourceEvent.UPDATED, ResourceEvent.DELETED)).isEqualTo(ResourceEvent.DELETED);
+        assertThat(EventCoalescer.merge(ResourceEvent.DELETED, ResourceEvent.CREATED)).isEqualTo(ResourceEvent.UPDATED);
+    }
+
+    @Test
+    public void testCoalescing() {
+        Resource a = new DefaultResource("/a");
+        Resource b = new DefaultResource("/b");
+        Resource c = new DefaultResource("/c");
+        coalescer.offer(ResourceEvent.UPDATED, a, "a", 1);
+        coalescer.offer(ResourceEvent.CREATED, b, "b", 2);
+        coalescer.offer(ResourceEvent.CREATED, c, "c", 3);
+        coalescer.offer(ResourceEvent.UPDATED, a, "a", 4);
+        coalescer.offer(ResourceEvent.DELETED, b, "b", 5);
+        coalescer.offer(ResourceEvent.UPDATED, c, "c", 6);
+        coalescer.offer(ResourceEvent.UPDATED, a, "a", 7);
+        assertThat(posted).isEmpty();
+        assertThat(coalescer.getPending()).isEqualTo(2);
+
+        coalescer.flush();
+        assertThat(posted).containsExactly("UPDATED a 7", "CREATED c 6");
+        assertThat(coalescer.getReceived()).isEqualTo(7);
+        assertThat(coalescer.getPosted()).isEqualTo(2);
+        assertThat(coalescer.getCoalesced()).isEqualTo(3);
+        assertThat(coalescer.getCollapsed()).isEqualTo(1);
+        assertThat(coalescer.getPending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testPathsSharingATopicAreNotMerged() {
+        Resource dot = new DefaultResource("/a.b");
+        Resource dash = new DefaultResource("/a-b");
+        String topic = Everest.topicFromPath(dot.getCanonicalPath());
+        assertThat(Everest.topicFromPath(dash.getCanonicalPath())).isEqualTo(topic);
+
+        coalescer.offer(ResourceEvent.CREATED, dot, topic, 1);
+        coalescer.offer(ResourceEvent.UPDATED, dash, topic, 2);
+        coalescer.offer(ResourceEvent.DELETED, dot, topic, 3);
+        coalescer.flush();
+        assertThat(posted).containsExactly("UPDATED " + topic + " 2");
+        assertThat(coalescer.getCollapsed()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWindowCloses() throws InterruptedException {
+        coalescer.setWindow(10);
+        coalescer.offer(ResourceEvent.UPDATED, new DefaultResource("/a"), "a", 1);
+        assertThat(flushed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(posted).containsExactly("UPDATED a 1");
+    }
+
+    @Test
+    public void testDisablingFlushes() {
+        coalescer.offer(ResourceEvent.UPDATED, new DefaultResource("/a"), "a", 1);
+        assertThat(coalescer.isEnabled()).isTrue();
+        coalescer.setWindow(0);
+        assertThat(coalescer.isEnabled()).isFalse();
+        assertThat(posted).containsExactly("UPDATED a 1");
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.Test;
+import org.ow2.chameleon.everest.impl.DefaultRequest;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.services.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the event journal.
+ */
+public class TestEventJournal {
+
+    @Test
+    public void testAppendAndRead() {
+        EventJournal journal = new EventJournal(1024);
+        assertThat(journal.getLastSequence()).isEqualTo(0);
+        assertThat(journal.append(ResourceEvent.CREATED, Path.from("/a"))).isEqualTo(1);
+        assertThat(journal.append(ResourceEvent.UPDATED, Path.from("/a/é"))).isEqualTo(2);
+        assertThat(journal.append(ResourceEvent.DELETED, Path.from("/b"))).isEqualTo(3);
+
+        List<EventJournal.Entry> entries = journal.read(2, 10);
+        assertThat(entries).hasSize(2);
+        assertThat(entries.get(0).getSequence()).isEqualTo(2);
+        assertThat(entries.get(0).getType()).isEqualTo(ResourceEvent.UPDATED);
+        assertThat(entries.get(0).getPath().toString()).isEqualTo("/a/é");
+        assertThat(entries.get(1).getType()).isEqualTo(ResourceEvent.DELETED);
+        assertThat(journal.read(1, 1)).hasSize(1);
+        assertThat(journal.read(4, 10)).isEmpty();
+    }
+
+    @Test
+    public void testOldestEventsAreDropped() {
+        // Each record takes 13 + 6 bytes: 5 of them fit
+        EventJournal journal = new EventJournal(100);
+        for (int i = 0; i < 12; i++) {
+            journal.append(ResourceEvent.UPDATED, Path.from("/r/" + (100 + i)));
+        }
+        assertThat(journal.getFirstSequence()).isEqualTo(8);
+        assertThat(journal.getLastSequence()).isEqualTo(12);
+        List<EventJournal.Entry> entries = journal.read(1, 100);
+        assertThat(entries).hasSize(5);
+        // Records wrapping around the end of the buffer are read back
+        for (int i = 0; i < 5; i++) {
+            assertThat(entries.get(i).getSequence()).isEqualTo(8 + i);
+            assertThat(entries.get(i).getPath().toString()).isEqualTo("/r/" + (107 + i));
+        }
+    }
+
+    @Test
+    public void testSeekingThroughTheCheckpoints() {
+        EventJournal journal = new EventJournal(4096);
+        for (int i = 1; i <= 2000; i++) {
+            journal.append(ResourceEvent.UPDATED, Path.from("/r/" + i));
+        }
+        long first = journal.getFirstSequence();
+        assertThat(first).isGreaterThan(1);
+        for (long from = first - 3; from <= 2001; from += 7) {
+            List<EventJournal.Entry> entries = journal.read(from, 3);
+            long expected = Math.max(from, first);
+            assertThat(entries).hasSize((int) Math.min(3, 2001 - expected));
+            for (EventJournal.Entry entry : entries) {
+                assertThat(entry.getSequence()).isEqualTo(expected);
+                assertThat(entry.getPath().toString()).isEqualTo("/r/" + expected);
+                expected++;
+            }
+        }
+    }
+
+    @Test
+    public void testDisabledJournal() {
+        EventJournal journal = new EventJournal(0);
+        assertThat(journal.append(ResourceEvent.UPDATED, Path.from("/a"))).isEqualTo(1);
+        assertThat(journal.append(ResourceEvent.UPDATED, Path.from("/a"))).isEqualTo(2);
+        assertThat(journal.read(1, 10)).isEmpty();
+        assertThat(journal.getFirstSequence()).isEqualTo(3);
+    }
+
+    @Test
+    public void testEventsResource() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        Everest everest = new Everest();
+        DefaultResource resource = new DefaultResource("/journaled") {
+            @Override
+            public boolean isObservable() {
+                return true;
+            }
+        };
+        long last = everest.getEventJournal().getLastSequence();
+        Everest.postResource(ResourceEvent.CREATED, resource);
+        Everest.postResource(ResourceEvent.UPDATED, resource);
+
+        Resource events = everest.process(new DefaultRequest(Action.READ, Path.from("/everest/events"),
+                Collections.<String, Object>singletonMap("from", last + 1)));
+        assertThat(events.getMetadata().get("resync")).isEqualTo(false);
+        List<?> list = events.getMetadata().get("events", List.class);
+        assertThat(list).hasSize(2);
+        assertThat(((Map<?, ?>) list.get(1)).get("eventType")).isEqualTo("UPDATED");
+        assertThat(((Map<?, ?>) list.get(1)).get("canonicalPath")).isEqualTo("/journaled");
+
+        Resource current = everest.process(new DefaultRequest(Action.READ, Path.from("/everest/events"), null));
+        assertThat(current.getMetadata().get("last")).isEqualTo(last + 2);
+        everest.stop();
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.ResourceEvent;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.*;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the events posted by everest.
+ */
+public class TestEventPosting {
+
+    private final Everest everest = new Everest();
+    private final List<Event> events = new ArrayList<Event>();
+    private final EventAdmin eventAdmin = new EventAdmin() {
+        public void postEvent(Event event) {
+            events.add(event);
+        }
+
+        public void sendEvent(Event event) {
+            events.add(event);
+        }
+    };
+    private final HandlerReference handler = new HandlerReference();
+
+    @Before
+    public void setUp() {
+        everest.bindEventAdmin(eventAdmin);
+    }
+
+    @After
+    public void tearDown() {
+        everest.unbindEventHandler(handler);
+        everest.unbindEventAdmin(eventAdmin);
+        everest.stop();
+    }
+
+    @Test
+    public void testTopicMatching() {
+        EventTopics topics = new EventTopics();
+        assertThat(topics.hasListener("everest/foo")).isFalse();
+        topics.add("a", "everest/foo");
+        topics.add("b", new String[]{"everest/bar/*"});
+        assertThat(topics.hasListener("everest/foo")).isTrue();
+        assertThat(topics.hasListener("everest/foo/child")).isFalse();
+        assertThat(topics.hasListener("everest/bar")).isFalse();
+        assertThat(topics.hasListener("everest/bar/1/2")).isTrue();
+        topics.add("c", Arrays.asList("*"));
+        assertThat(topics.hasListener("anything")).isTrue();
+        topics.remove("c");
+        topics.remove("b");
+        assertThat(topics.hasListener("everest/bar/1")).isFalse();
+        assertThat(topics.hasListener("everest/foo")).isTrue();
+    }
+
+    @Test
+    public void testTopicFromPath() {
+        Path path = Path.from("/osgi/bundles/org.foo bar/a:b");
+        String topic = Everest.topicFromPath(path);
+        assertThat(topic).isEqualTo("everest/osgi/bundles/org-foo_bar/a_b");
+        assertThat(Everest.topicFromPath(path)).isSameAs(topic);
+        assertThat(Everest.topicFromPath(Path.from("/"))).isEqualTo("everest/");
+    }
+
+    @Test
+    public void testConfiguration() {
+        EverestConfiguration initial = Everest.getConfiguration();
+        try {
+            everest.setSynchronousProcessing(true);
+            everest.setEventCoalescingWindow(-5);
+            assertThat(Everest.getConfiguration().isSynchronousProcessing()).isTrue();
+            assertThat(Everest.getConfiguration().getCoalescingWindow()).isEqualTo(0);
+            assertThat(everest.getEventCoalescer().getWindow()).isEqualTo(0);
+        } finally {
+            everest.setSynchronousProcessing(initial.isSynchronousProcessing());
+            everest.setEventCoalescingWindow(initial.getCoalescingWindow());
+        }
+    }
+
+    @Test
+    public void testNoEventWithoutListener() {
+        CountingResource resource = new CountingResource("/foo");
+        assertThat(Everest.postResource(ResourceEvent.UPDATED, resource)).isFalse();
+        assertThat(events).isEmpty();
+        assertThat(resource.metadataReads).isEqualTo(0);
+    }
+
+    @Test
+    public void testLazyPayload() {
+        handler.topics = "everest/*";
+        everest.bindEventHandler(handler);
+        CountingResource resource = new CountingResource("/foo");
+        assertThat(Everest.postResource(ResourceEvent.UPDATED, resource)).isTrue();
+        assertThat(Everest.postResource(ResourceEvent.UPDATED, resource)).isTrue();
+        assertThat(events).hasSize(2);
+
+        Event event = events.get(0);
+        assertThat(event.getTopic()).isEqualTo("everest/foo");
+        assertThat(event.getProperty("eventType")).isEqualTo("UPDATED");
+        assertThat(event.getProperty("canonicalPath")).isEqualTo("/foo");
+        assertThat(event.getProperty("resourceType")).isEqualTo(CountingResource.class.getName());
+        assertThat((Long) events.get(1).getProperty("version")).isGreaterThan((Long) event.getProperty("version"));
+        // Nothing read yet
+        assertThat(resource.metadataReads).isEqualTo(0);
+
+        ResourceMetadata metadata = (ResourceMetadata) event.getProperty("metadata");
+        assertThat(metadata.get("name")).isEqualTo("foo");
+        assertThat(metadata.size()).isEqualTo(1);
+        assertThat(resource.metadataReads).isEqualTo(1);
+        assertThat((List<?>) event.getProperty("relations")).isNotEmpty();
+    }
+
+    @Test
+    public void testModifiedHandlerTopics() {
+        handler.topics = new String[]{"everest/bar/*"};
+        everest.bindEventHandler(handler);
+        CountingResource resource = new CountingResource("/foo");
+        assertThat(Everest.postResource(ResourceEvent.UPDATED, resource)).isFalse();
+
+        handler.topics = new String[]{"everest/bar/*", "everest/foo"};
+        everest.modifiedEventHandler(handler);
+        assertThat(Everest.postResource(ResourceEvent.UPDATED, resource)).isTrue();
+
+        everest.unbindEventHandler(handler);
+        assertThat(Everest.postResource(ResourceEvent.UPDATED, resource)).isFalse();
+    }
+
+    @Test
+    public void testDeletedResourcesAreReadWhenPosted() {
+        handler.topics = "everest/*";
+        everest.bindEventHandler(handler);
+        CountingResource resource = new CountingResource("/foo");
+        resource.metadata.put("state", "ACTIVE");
+        assertThat(Everest.postResource(ResourceEvent.DELETED, resource)).isTrue();
+        assertThat(resource.metadataReads).isEqualTo(1);
+
+        // The resource is gone: its state is not read anymore
+        resource.metadata.put("state", "UNINSTALLED");
+        Event event = events.get(0);
+        assertThat(event.getProperty("resourceType")).isEqualTo(CountingResource.class.getName());
+        assertThat(event.getProperty("canonicalPath")).isEqualTo("/foo");
+        assertThat(((ResourceMetadata) event.getProperty("metadata")).get("state")).isEqualTo("ACTIVE");
+        assertThat((List<?>) event.getProperty("relations")).isNotEmpty();
+        assertThat(resource.metadataReads).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeltaEvents() {
+        handler.topics = "everest/*";
+        everest.bindEventHandler(handler);
+        int initial = Everest.getConfiguration().getDeltaCacheSize();
+        everest.setEventDeltaCacheSize(10);
+        try {
+            CountingResource resource = new CountingResource("/foo");
+            resource.metadata.put("name", "foo");
+            resource.metadata.put("state", "INSTALLED");
+            resource.metadata.put("old", 1);
+            resource.metadata.put("objectClass", new String[]{"org.foo.Service"});
+            Everest.postResource(ResourceEvent.CREATED, resource);
+            assertThat(events.get(0).getProperty("delta")).isNull();
+            assertThat(events.get(0).getProperty("metadata")).isNotNull();
+
+            resource.metadata.put("state", "ACTIVE");
+            resource.metadata.remove("old");
+            resource.metadata.put("new", 2);
+            // An equal array is not a change
+            resource.metadata.put("objectClass", new String[]{"org.foo.Service"});
+            Everest.postResource(ResourceEvent.UPDATED, resource);
+            // Only the delta is sent
+            assertThat(events.get(1).getProperty("metadata")).isNull();
+            MetadataDelta delta = (MetadataDelta) events.get(1).getProperty("delta");
+            assertThat(delta.getAdded()).isEqualTo(Collections.singletonMap("new", 2));
+            assertThat(delta.getChanged()).isEqualTo(Collections.singletonMap("state", "ACTIVE"));
+            assertThat(delta.getRemoved()).containsOnly("old");
+
+            everest.setEventDeltaFullMetadata(true);
+            Everest.postResource(ResourceEvent.UPDATED, resource);
+            assertThat(((MetadataDelta) events.get(2).getProperty("delta")).isEmpty()).isTrue();
+            assertThat(events.get(2).getProperty("metadata")).isNotNull();
+            everest.setEventDeltaFullMetadata(false);
+
+            // The state of deleted resources is forgotten
+            Everest.postResource(ResourceEvent.DELETED, resource);
+            Everest.postResource(ResourceEvent.UPDATED, resource);
+            assertThat(events.get(4).getProperty("delta")).isNull();
+            assertThat(events.get(4).getProperty("metadata")).isNotNull();
+        } finally {
+            everest.setEventDeltaCacheSize(initial);
+        }
+    }
+
+    @Test
+    public void testPublishedStatesEviction() {
+        PublishedStates states = new PublishedStates(2);
+        ResourceMetadata metadata = new ImmutableResourceMetadata.Builder().set("a", 1).build();
+        assertThat(states.publish(Path.from("/a"), metadata)).isNull();
+        assertThat(states.publish(Path.from("/b"), metadata)).isNull();
+        assertThat(states.publish(Path.from("/a"), metadata)).isNotNull();
+        // Evicts /b, the least recently published
+        states.publish(Path.from("/c"), metadata);
+        assertThat(states.size()).isEqualTo(2);
+        assertThat(states.publish(Path.from("/b"), metadata)).isNull();
+        states.setCapacity(0);
+        assertThat(states.isEnabled()).isFalse();
+        assertThat(states.size()).isEqualTo(0);
+        assertThat(states.publish(Path.from("/a"), metadata)).isNull();
+    }
+
+    /**
+     * An observable resource counting the reads of its metadata.
+     */
+    /**
+     * The reference of an event handler, exposing its {@code event.topics} property.
+     */
+    private static class HandlerReference implements ServiceReference<EventHandler> {
+
+        private Object topics;
+
+        public Object getProperty(String key) {
+            return EventConstants.EVENT_TOPIC.equals(key) ? topics : null;
+        }
+
+        public String[] getPropertyKeys() {
+            return new String[]{EventConstants.EVENT_TOPIC};
+        }
+
+        public Bundle getBundle() {
+            return null;
+        }
+
+        public Bundle[] getUsingBundles() {
+            return null;
+        }
+
+        public boolean isAssignableTo(Bundle bundle, String className) {
+            return true;
+        }
+
+        public int compareTo(Object reference) {
+            return 0;
+        }
+    }
+
+    private static class CountingResource extends DefaultResource {
+
+        private int metadataReads;
+
+        /**
+         * The metadata of the resource, only the name if empty.
+         */
+        private final Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+
+        private CountingResource(String path) {
+            super(Path.from(path));
+        }
+
+        @Override
+        public ResourceMetadata getMetadata() {
+            metadataReads++;
+            if (!metadata.isEmpty()) {
+                return ImmutableResourceMetadata.of(metadata);
+            }
+            return new ImmutableResourceMetadata.Builder().set("name", getPath().getLast()).build();
+        }
+
+        @Override
+        public boolean isObservable() {
+            return true;
+        }
+    }
+
+}
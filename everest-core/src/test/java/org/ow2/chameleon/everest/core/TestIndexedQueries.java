@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.chameleon.everest.filters.ResourceFilters;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.impl.ResourceIterator;
+import org.ow2.chameleon.everest.query.ParseException;
+import org.ow2.chameleon.everest.query.QueryPlans;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.*;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the queries answered by the metadata index.
+ */
+public class TestIndexedQueries {
+
+    private MetadataIndex index;
+
+    private Node root;
+
+    private Node bundles;
+
+    @Before
+    public void setUp() {
+        IndexedQueries.setEnabled(true);
+        index = IndexedQueries.getIndex();
+        root = new Node("/", null);
+        bundles = root.add("bundles", null);
+        for (int i = 0; i < 300; i++) {
+            bundles.add(Integer.toString(i), new ImmutableResourceMetadata.Builder()
+                    .set("bundle-state", i % 100 == 0 ? "RESOLVED" : "ACTIVE")
+                    .set("modified", 1000L * i)
+                    .build());
+        }
+        for (Iterator<Resource> iterator = new ResourceIterator(root); iterator.hasNext(); ) {
+            Resource resource = iterator.next();
+            index.update(resource.getCanonicalPath(), resource.getMetadata());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        IndexedQueries.setEnabled(false);
+    }
+
+    @Test
+    public void testCoveredTreesAreAnsweredByTheIndex() {
+        ResourceFilter resolved = ResourceFilters.equalsTo("bundle-state", "RESOLVED");
+        List<Resource> expected = sequential(root, resolved);
+        assertThat(expected).hasSize(3);
+
+        // The first query visits the tree, and covers it
+        assertThat(root.getResources(resolved)).isEqualTo(expected);
+        assertThat(index.isCovered(Path.from("/bundles"))).isTrue();
+        int rejectedReads = bundles.get(1).metadataReads;
+        int candidateReads = bundles.get(100).metadataReads;
+
+        // The next ones only visit the candidates
+        assertThat(root.getResources(resolved)).isEqualTo(expected);
+        assertThat(bundles.getResources(resolved)).isEqualTo(expected);
+        assertThat(bundles.get(1).metadataReads).isEqualTo(rejectedReads);
+        assertThat(bundles.get(100).metadataReads).isEqualTo(candidateReads + 2);
+
+        // Updates are followed
+        bundles.get(1).values.put("bundle-state", "RESOLVED");
+        index.update(bundles.get(1).getPath(), bundles.get(1).getMetadata());
+        assertThat(root.getResources(resolved)).hasSize(4).contains(bundles.get(1));
+    }
+
+    @Test
+    public void testResourcesCreatedWithoutIndexingAreFound() {
+        ResourceFilter resolved = ResourceFilters.equalsTo("bundle-state", "RESOLVED");
+        assertThat(root.getResources(resolved)).hasSize(3);
+
+        Node created = bundles.add("300", new ImmutableResourceMetadata.Builder()
+                .set("bundle-state", "RESOLVED")
+                .build());
+        index.uncover(created.getPath());
+        assertThat(index.isCovered(Path.from("/bundles"))).isFalse();
+        assertThat(root.getResources(resolved)).hasSize(4).contains(created);
+        // Not indexed, so not covered
+        assertThat(index.isCovered(Path.from("/bundles"))).isFalse();
+        assertThat(root.getResources(resolved)).hasSize(4).contains(created);
+    }
+
+    @Test
+    public void testRangeQueriesAreAnsweredByTheIndex() throws ParseException {
+        ResourceFilter recent = QueryPlans.compile("{modified:{$gt:296500}}", null);
+        ResourceFilter old = QueryPlans.compile("{modified:{$lt:2000}}", null);
+        assertThat(root.getResources(recent)).containsExactly(bundles.get(297), bundles.get(298), bundles.get(299));
+        int reads = bundles.get(150).metadataReads;
+
+        assertThat(root.getResources(recent)).containsExactly(bundles.get(297), bundles.get(298), bundles.get(299));
+        assertThat(root.getResources(old)).containsExactly(bundles.get(0), bundles.get(1));
+        assertThat(bundles.get(150).metadataReads).isEqualTo(reads);
+
+        bundles.get(150).values.put("modified", 500000L);
+        index.update(bundles.get(150).getPath(), bundles.get(150).getMetadata());
+        assertThat(root.getResources(recent)).hasSize(4).contains(bundles.get(150));
+    }
+
+    @Test
+    public void testListsSkipTheRejectedIndexedResources() {
+        List<Resource> resources = new ArrayList<Resource>(bundles.getResources());
+        Node unindexed = new Node("/bundles/unindexed", new ImmutableResourceMetadata.Builder()
+                .set("bundle-state", "RESOLVED")
+                .build());
+        resources.add(unindexed);
+        List<Resource> result = IndexedQueries.filter(resources, ResourceFilters.equalsTo("bundle-state", "RESOLVED"));
+        assertThat(result).containsExactly(bundles.get(0), bundles.get(100), bundles.get(200), unindexed);
+        assertThat(bundles.get(1).metadataReads).isEqualTo(1);
+    }
+
+    private static List<Resource> sequential(Resource root, ResourceFilter filter) {
+        List<Resource> result = new ArrayList<Resource>();
+        Iterator<Resource> iterator = new ResourceIterator(root);
+        while (iterator.hasNext()) {
+            Resource resource = iterator.next();
+            if (filter.accept(resource)) {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A resource holding mutable metadata, counting their reads.
+     */
+    private static class Node extends DefaultResource {
+
+        private final List<Resource> children = new ArrayList<Resource>();
+
+        private final Map<String, Object> values = new HashMap<String, Object>();
+
+        private int metadataReads;
+
+        private Node(String path, ResourceMetadata metadata) {
+            super(Path.from(path));
+            if (metadata != null) {
+                values.putAll(metadata);
+            }
+        }
+
+        private Node add(String name, ResourceMetadata metadata) {
+            Node child = new Node(getPath().addElements(name).toString(), metadata);
+            children.add(child);
+            return child;
+        }
+
+        private Node get(int i) {
+            return (Node) children.get(i);
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            return children;
+        }
+
+        @Override
+        public ResourceMetadata getMetadata() {
+            metadataReads++;
+            ImmutableResourceMetadata.Builder builder = new ImmutableResourceMetadata.Builder();
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                builder.set(entry.getKey(), entry.getValue());
+            }
+            return builder.build();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.Test;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.ResourceEvent;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the metadata index.
+ */
+public class TestMetadataIndex {
+
+    private final Path a = Path.from("/osgi/bundles/1");
+    private final Path b = Path.from("/osgi/bundles/2");
+
+    @Test
+    public void testLookups() {
+        MetadataIndex index = new MetadataIndex();
+        index.update(a, new ImmutableResourceMetadata.Builder()
+                .set("bundle-state", "RESOLVED")
+                .set("bundle-id", 1L)
+                .set("objectClass", new String[]{"org.foo.Service", "org.foo.Other"})
+                .build());
+        index.update(b, new ImmutableResourceMetadata.Builder()
+                .set("bundle-state", "ACTIVE")
+                .set("bundle-id", 2)
+                .set("objectClass", Arrays.asList("org.foo.Service"))
+                .build());
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.withKey("bundle-state")).containsOnly(a, b);
+        assertThat(index.withKey("missing")).isEmpty();
+        assertThat(index.withValue("bundle-state", "RESOLVED")).containsOnly(a);
+        // Numbers are compared by value, whatever their type
+        assertThat(index.withValue("bundle-id", 2.0)).containsOnly(b);
+        assertThat(index.withElement("objectClass", "org.foo.Service")).containsOnly(a, b);
+        assertThat(index.withElement("objectClass", "org.foo.Other")).containsOnly(a);
+
+        // Updates replace the previous state
+        index.update(a, new ImmutableResourceMetadata.Builder().set("bundle-state", "ACTIVE").build());
+        assertThat(index.withValue("bundle-state", "RESOLVED")).isEmpty();
+        assertThat(index.withValue("bundle-state", "ACTIVE")).containsOnly(a, b);
+        assertThat(index.withElement("objectClass", "org.foo.Service")).containsOnly(b);
+
+        index.remove(b);
+        assertThat(index.isIndexed(b)).isFalse();
+        assertThat(index.withKey("objectClass")).isEmpty();
+    }
+
+    @Test
+    public void testLazyValuesAreNotComputed() {
+        final int[] computed = new int[1];
+        ImmutableResourceMetadata.Lazy<String> location = new ImmutableResourceMetadata.Lazy<String>() {
+            @Override
+            protected String compute() {
+                computed[0]++;
+                return "file:/bundle.jar";
+            }
+        };
+        MetadataIndex index = new MetadataIndex();
+        index.update(a, new ImmutableResourceMetadata.Builder()
+                .set("bundle-id", 1L)
+                .set("bundle-location", location)
+                .build());
+        index.update(b, new ImmutableResourceMetadata.Builder()
+                .set("bundle-id", 2L)
+                .set("bundle-location", "file:/other.jar")
+                .build());
+
+        assertThat(computed[0]).isEqualTo(0);
+        assertThat(index.withKey("bundle-location")).containsOnly(a, b);
+        // The lazy value may match any value
+        assertThat(index.withValue("bundle-location", "file:/other.jar")).containsOnly(a, b);
+        assertThat(index.withValue("bundle-location", "file:/none.jar")).containsOnly(a);
+        assertThat(index.greaterThan("bundle-location", 0)).containsOnly(a);
+        assertThat(index.withValue("bundle-id", 2)).containsOnly(b);
+
+        // Computed values are indexed as is
+        location.get();
+        index.update(a, new ImmutableResourceMetadata.Builder().set("bundle-location", location).build());
+        assertThat(computed[0]).isEqualTo(1);
+        assertThat(index.withValue("bundle-location", "file:/other.jar")).containsOnly(b);
+        assertThat(index.withValue("bundle-location", "file:/bundle.jar")).containsOnly(a);
+    }
+
+    @Test
+    public void testRanges() {
+        MetadataIndex index = new MetadataIndex();
+        for (int i = 0; i < 50; i++) {
+            index.update(Path.from("/threads/" + i), new ImmutableResourceMetadata.Builder()
+                    .set("cpu-time", (long) (i % 10) * 1000)
+                    .build());
+        }
+        assertThat(index.greaterThan("cpu-time", 7000)).hasSize(10);
+        assertThat(index.greaterThan("cpu-time", 6999.5)).hasSize(15);
+        assertThat(index.lowerThan("cpu-time", 1000)).hasSize(5);
+        assertThat(index.lowerThan("cpu-time", 0)).isEmpty();
+        assertThat(index.greaterThan("cpu-time", Double.NaN)).isEmpty();
+        assertThat(index.greaterThan("missing", 0)).isEmpty();
+
+        // Updates move the value
+        index.update(Path.from("/threads/0"), new ImmutableResourceMetadata.Builder().set("cpu-time", 9999).build());
+        assertThat(index.greaterThan("cpu-time", 8500)).contains(Path.from("/threads/0")).hasSize(6);
+        assertThat(index.lowerThan("cpu-time", 1000)).hasSize(4);
+        index.remove(Path.from("/threads/0"));
+        assertThat(index.greaterThan("cpu-time", 8500)).hasSize(5);
+    }
+
+    @Test
+    public void testFedByEvents() {
+        Everest everest = new Everest();
+        everest.setMetadataIndex(true);
+        try {
+            final ResourceMetadata metadata = new ImmutableResourceMetadata.Builder().set("state", "ON").build();
+            DefaultResource resource = new DefaultResource("/indexed") {
+                @Override
+                public ResourceMetadata getMetadata() {
+                    return metadata;
+                }
+
+                @Override
+                public boolean isObservable() {
+                    return true;
+                }
+            };
+            Everest.postResource(ResourceEvent.CREATED, resource);
+            assertThat(Everest.getMetadataIndex().withValue("state", "ON")).containsOnly(Path.from("/indexed"));
+            Everest.postResource(ResourceEvent.DELETED, resource);
+            assertThat(Everest.getMetadataIndex().isIndexed(Path.from("/indexed"))).isFalse();
+        } finally {
+            everest.setMetadataIndex(false);
+            everest.stop();
+        }
+        assertThat(Everest.getMetadataIndex()).isNull();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.ow2.chameleon.everest.services.Path.from;
+
+/**
+ * Checks the behavior of the {@code PathTrie} used to route requests.
+ */
+public class TestPathTrie {
+
+    @Test
+    public void testEmpty() {
+        PathTrie<String> trie = PathTrie.empty();
+        assertThat(trie.isEmpty()).isTrue();
+        assertThat(trie.get(from("/"))).isNull();
+        assertThat(trie.get(from("/abc"))).isNull();
+        assertThat(trie.getDeepest(from("/abc/def"))).isNull();
+    }
+
+    @Test
+    public void testGet() {
+        PathTrie<String> trie = PathTrie.<String>empty()
+                .put(from("/abc"), "abc")
+                .put(from("/abc/def/ghi"), "ghi");
+        assertThat(trie.get(from("/abc"))).isEqualTo("abc");
+        assertThat(trie.get(from("/abc/def"))).isNull();
+        assertThat(trie.get(from("/abc/def/ghi"))).isEqualTo("ghi");
+        assertThat(trie.get(from("/xyz"))).isNull();
+    }
+
+    @Test
+    public void testGetDeepest() {
+        PathTrie<String> trie = PathTrie.<String>empty()
+                .put(from("/abc"), "abc")
+                .put(from("/abc/def/ghi"), "ghi");
+        assertThat(trie.getDeepest(from("/abc"))).isEqualTo("abc");
+        assertThat(trie.getDeepest(from("/abc/def"))).isEqualTo("abc");
+        assertThat(trie.getDeepest(from("/abc/def/ghi/jkl"))).isEqualTo("ghi");
+        assertThat(trie.getDeepest(from("/abc/xyz/ghi"))).isEqualTo("abc");
+        assertThat(trie.getDeepest(from("/xyz/abc"))).isNull();
+        assertThat(trie.getDeepest(from("/"))).isNull();
+    }
+
+    @Test
+    public void testPutIsPersistent() {
+        PathTrie<String> empty = PathTrie.empty();
+        PathTrie<String> first = empty.put(from("/abc"), "first");
+        PathTrie<String> second = first.put(from("/abc"), "second");
+        assertThat(empty.get(from("/abc"))).isNull();
+        assertThat(first.get(from("/abc"))).isEqualTo("first");
+        assertThat(second.get(from("/abc"))).isEqualTo("second");
+    }
+
+    @Test
+    public void testRemove() {
+        PathTrie<String> trie = PathTrie.<String>empty()
+                .put(from("/abc"), "abc")
+                .put(from("/abc/def"), "def");
+
+        PathTrie<String> removed = trie.remove(from("/abc"));
+        assertThat(removed.get(from("/abc"))).isNull();
+        assertThat(removed.get(from("/abc/def"))).isEqualTo("def");
+        assertThat(removed.getDeepest(from("/abc/xyz"))).isNull();
+        // The original trie is unchanged
+        assertThat(trie.get(from("/abc"))).isEqualTo("abc");
+
+        assertThat(removed.remove(from("/abc/def")).isEmpty()).isTrue();
+        // Removing an unbound path is harmless
+        assertThat(trie.remove(from("/xyz/abc")).get(from("/abc"))).isEqualTo("abc");
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ResourceIterator;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the parallel evaluation of the queries.
+ */
+public class TestQueryExecutor {
+
+    private final int defaultParallelism = QueryExecutor.getParallelism();
+
+    @After
+    public void tearDown() {
+        QueryExecutor.setParallelism(defaultParallelism);
+    }
+
+    @Test
+    public void testTreesAreEvaluatedInParallelInOrder() {
+        Node root = tree();
+        Even filter = new Even();
+        List<Resource> expected = sequential(root, filter);
+
+        QueryExecutor.setParallelism(4);
+        filter.threads.clear();
+        assertThat(root.getResources(filter)).isEqualTo(expected);
+        assertThat(filter.threads.size()).isGreaterThan(1);
+
+        QueryExecutor.setParallelism(1);
+        filter.threads.clear();
+        assertThat(root.getResources(filter)).isEqualTo(expected);
+        assertThat(filter.threads).containsOnly(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void testSubtreesAreSplitAtTheCollectionMembers() {
+        Resource domain = tree().getResources().get(0);
+        final Map<String, String> threads = new ConcurrentHashMap<String, String>();
+        ResourceFilter filter = new Even() {
+            @Override
+            public boolean accept(Resource resource) {
+                threads.put(resource.getPath().toString(), Thread.currentThread().getName());
+                return super.accept(resource);
+            }
+        };
+        List<Resource> expected = sequential(domain, filter);
+        QueryExecutor.setParallelism(4);
+        assertThat(domain.getResources(filter)).isEqualTo(expected);
+        // The domain and its collections are visited by the caller, the members of the collections by the pool.
+        assertThat(threads.get("/d0")).isEqualTo(Thread.currentThread().getName());
+        assertThat(threads.get("/d0/c1")).isEqualTo(Thread.currentThread().getName());
+        assertThat(threads.get("/d0/c1/100")).startsWith("everest-query-");
+        assertThat(threads.get("/d0/c1/100/1")).startsWith("everest-query-");
+    }
+
+    @Test
+    public void testSmallTreesStaySequential() {
+        Node root = new Node("/");
+        Node collection = root.add("domain").add("collection");
+        for (int i = 0; i < QueryExecutor.THRESHOLD - 1; i++) {
+            collection.add(Integer.toString(i));
+        }
+        QueryExecutor.setParallelism(4);
+        Even filter = new Even();
+        assertThat(root.getResources(filter)).isEqualTo(sequential(root, filter));
+        assertThat(filter.threads).containsOnly(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void testListsKeepTheirOrder() {
+        List<Resource> resources = new ArrayList<Resource>();
+        for (int i = 0; i < 1000; i++) {
+            resources.add(new Node("/list/" + i));
+        }
+        QueryExecutor.setParallelism(4);
+        Even filter = new Even();
+        List<Resource> result = QueryExecutor.filter(resources, filter);
+        assertThat(result).hasSize(500);
+        for (int i = 0; i < result.size(); i++) {
+            assertThat(result.get(i)).isSameAs(resources.get(2 * i));
+        }
+    }
+
+    @Test
+    public void testFailuresArePropagated() {
+        Node root = tree();
+        QueryExecutor.setParallelism(4);
+        try {
+            root.getResources(new ResourceFilter() {
+                public boolean accept(Resource resource) {
+                    if (resource.getPath().toString().equals("/d1/c1/199/1")) {
+                        throw new IllegalStateException("Broken resource");
+                    }
+                    return true;
+                }
+            });
+            fail("The failure of the filter should be propagated");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("Broken resource");
+        }
+    }
+
+    /**
+     * @return a tree with 2 domains of 3 collections, each holding 200 members having 2 children
+     */
+    private static Node tree() {
+        Node root = new Node("/");
+        for (int d = 0; d < 2; d++) {
+            Node domain = root.add("d" + d);
+            for (int c = 0; c < 3; c++) {
+                Node collection = domain.add("c" + c);
+                for (int m = 0; m < 200; m++) {
+                    Node member = collection.add(Integer.toString(m));
+                    member.add("0");
+                    member.add("1");
+                }
+            }
+        }
+        return root;
+    }
+
+    private static List<Resource> sequential(Resource root, ResourceFilter filter) {
+        List<Resource> result = new ArrayList<Resource>();
+        Iterator<Resource> iterator = new ResourceIterator(root);
+        while (iterator.hasNext()) {
+            Resource resource = iterator.next();
+            if (filter.accept(resource)) {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Accepts the resources whose name is an even number, and records the threads evaluating it.
+     */
+    private static class Even implements ResourceFilter {
+
+        private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+
+        public boolean accept(Resource resource) {
+            threads.add(Thread.currentThread().getName());
+            if (resource.getPath().getCount() == 0) {
+                return false;
+            }
+            try {
+                return Integer.parseInt(resource.getPath().getLast()) % 2 == 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class Node extends DefaultResource {
+
+        private final List<Resource> children = new ArrayList<Resource>();
+
+        private Node(String path) {
+            super(Path.from(path));
+        }
+
+        private Node add(String name) {
+            Node child = new Node(getPath().addElements(name).toString());
+            children.add(child);
+            return child;
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            return children;
+        }
+    }
+
+}
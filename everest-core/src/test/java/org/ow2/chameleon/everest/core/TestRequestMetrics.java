@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.core;
+
+import org.junit.Test;
+import org.ow2.chameleon.everest.impl.DefaultRequest;
+import org.ow2.chameleon.everest.services.*;
+
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the request metrics.
+ */
+public class TestRequestMetrics {
+
+    @Test
+    public void testBuckets() {
+        int previous = 0;
+        for (long duration = 0; duration < 100000; duration++) {
+            int bucket = RequestMetrics.bucket(duration);
+            assertThat(bucket).isGreaterThanOrEqualTo(previous);
+            assertThat(RequestMetrics.lowerBound(bucket)).isLessThanOrEqualTo(duration);
+            assertThat(RequestMetrics.lowerBound(bucket + 1)).isGreaterThan(duration);
+            previous = bucket;
+        }
+        assertThat(RequestMetrics.bucket(Long.MAX_VALUE)).isEqualTo(RequestMetrics.bucket(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void testStatistics() {
+        RequestMetrics metrics = new RequestMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(Action.READ, "osgi", i * 1000, i > 90);
+        }
+
+        RequestMetrics.Statistics statistics = metrics.getStatistics("osgi", Action.READ);
+        assertThat(statistics.getCount()).isEqualTo(100);
+        assertThat(statistics.getErrors()).isEqualTo(10);
+        assertThat(statistics.getMean()).isEqualTo(50500);
+        assertThat(statistics.getPercentile(50)).isGreaterThanOrEqualTo(50000).isLessThan(50000 * 5 / 4);
+        assertThat(statistics.getPercentile(99)).isGreaterThanOrEqualTo(99000).isLessThan(99000 * 5 / 4);
+        assertThat(metrics.getStatistics("osgi", Action.UPDATE).getCount()).isEqualTo(0);
+        assertThat(metrics.getStatistics("fs", Action.READ).getPercentile(50)).isEqualTo(0);
+    }
+
+    @Test
+    public void testMetricsResource() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        Everest everest = new Everest();
+        everest.process(new DefaultRequest(Action.READ, Path.from("/everest/domains"), null));
+        try {
+            everest.process(new DefaultRequest(Action.READ, Path.from("/everest/missing"), null));
+        } catch (ResourceNotFoundException e) {
+            // Expected
+        }
+
+        Resource resource = everest.process(new DefaultRequest(Action.READ, Path.from("/everest/metrics"), null));
+        Map<?, ?> read = (Map<?, ?>) resource.getMetadata().get("everest", Map.class).get("READ");
+        // The read of the metrics is counted too.
+        assertThat(read.get("count")).isEqualTo(3L);
+        assertThat(read.get("errors")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testUnknownPathsShareADomain() {
+        Everest everest = new Everest();
+        for (int i = 0; i < 100; i++) {
+            try {
+                everest.process(new DefaultRequest(Action.READ, Path.from("/x" + i), null));
+            } catch (Exception e) {
+                // Expected
+            }
+        }
+        assertThat(everest.getMetrics().getDomains()).containsOnly(RequestMetrics.UNKNOWN_DOMAIN);
+        assertThat(everest.getMetrics().getStatistics(RequestMetrics.UNKNOWN_DOMAIN, Action.READ).getErrors())
+                .isEqualTo(100);
+    }
+
+}
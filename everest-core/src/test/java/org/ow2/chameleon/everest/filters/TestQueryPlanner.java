@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.filters;
+
+import org.junit.Test;
+import org.ow2.chameleon.everest.core.MetadataIndex;
+import org.ow2.chameleon.everest.impl.DefaultResource;
+import org.ow2.chameleon.everest.impl.ImmutableResourceMetadata;
+import org.ow2.chameleon.everest.query.QueryPlans;
+import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Resource;
+import org.ow2.chameleon.everest.services.ResourceFilter;
+import org.ow2.chameleon.everest.services.ResourceMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the optimization of the query filters.
+ */
+public class TestQueryPlanner {
+
+    private final Resource bundle = resource(new ImmutableResourceMetadata.Builder()
+            .set("Name", "org.foo.bar")
+            .set("State", "ACTIVE")
+            .set("Id", 12)
+            .build());
+
+    private final Resource empty = resource(ImmutableResourceMetadata.EMPTY);
+
+    @Test
+    public void testConstantFolding() {
+        assertThat(QueryPlanner.optimize(ResourceFilters.not(ResourceFilters.all())))
+                .isSameAs(ResourceFilters.none());
+        assertThat(QueryPlanner.optimize(ResourceFilters.or(ResourceFilters.none(),
+                ResourceFilters.not(ResourceFilters.none())))).isSameAs(ResourceFilters.all());
+        assertThat(QueryPlanner.optimize(ResourceFilters.and(ResourceFilters.keyExist("Name"),
+                ResourceFilters.none()))).isSameAs(ResourceFilters.none());
+        // Empty lists reject everything
+        assertThat(QueryPlanner.optimize(ResourceFilters.and(new ArrayList<ResourceFilter>())))
+                .isSameAs(ResourceFilters.none());
+        assertThat(QueryPlanner.optimize(ResourceFilters.or(Collections.<ResourceFilter>emptyList())))
+                .isSameAs(ResourceFilters.none());
+
+        ResourceFilter exist = ResourceFilters.keyExist("Name");
+        assertThat(QueryPlanner.optimize(ResourceFilters.not(ResourceFilters.not(exist)))).isSameAs(exist);
+        assertThat(QueryPlanner.optimize(ResourceFilters.and(ResourceFilters.all(), exist))).isSameAs(exist);
+    }
+
+    @Test
+    public void testCheapPredicatesFirst() {
+        ResourceFilter regexp = ResourceFilters.regExp("Name", "foo");
+        ResourceFilter relations = ResourceFilters.hasAtLeastRelations(1);
+        ResourceFilter exist = ResourceFilters.keyExist("State");
+        ResourceFilter equals = ResourceFilters.equalsTo("State", "ACTIVE");
+        ResourceFilters.And plan = (ResourceFilters.And) QueryPlanner.optimize(ResourceFilters.and(
+                Arrays.asList(regexp, ResourceFilters.and(equals, exist), relations)));
+        assertThat(plan.filters).containsExactly(exist, equals, regexp, relations);
+        assertThat(plan.accept(bundle)).isTrue();
+        assertThat(plan.accept(empty)).isFalse();
+    }
+
+    @Test
+    public void testOperandsThatMayFailStayInPlace() {
+        ResourceFilter children = ResourceFilters.hasAtLeastChildren(1);
+        ResourceFilter exist = ResourceFilters.keyExist("Missing");
+        ResourceFilter regexp = ResourceFilters.regExp("Name", "foo");
+        ResourceFilters.And plan = (ResourceFilters.And) QueryPlanner.optimize(ResourceFilters.and(regexp,
+                children, exist));
+        assertThat(plan.filters).containsExactly(regexp, children, exist);
+
+        // The children filter fails on a resource without children list, optimized or not
+        Resource broken = new DefaultResource(Path.from("/broken")) {
+            @Override
+            public ResourceMetadata getMetadata() {
+                return new ImmutableResourceMetadata.Builder().set("Name", "foo").build();
+            }
+
+            @Override
+            public List<Resource> getResources() {
+                return null;
+            }
+        };
+        try {
+            plan.accept(broken);
+            fail("The children filter should be evaluated before the missing key");
+        } catch (NullPointerException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testInvalidRegexp() {
+        assertThat(ResourceFilters.regExp("Name", "(")).isSameAs(ResourceFilters.none());
+    }
+
+    @Test
+    public void testCompiledQueries() throws Exception {
+        ResourceFilter filter = QueryPlans.compile("{$or:[{Name:{$regexp:\"foo\"}},{State:$exist}]}", null);
+        assertThat(QueryPlans.compile("{$or:[{Name:{$regexp:\"foo\"}},{State:$exist}]}", null)).isSameAs(filter);
+        assertThat(filter.accept(bundle)).isTrue();
+        assertThat(filter.accept(empty)).isFalse();
+
+        ResourceFilter and = QueryPlans.compile("{{Name:$exist},{$not:{Id:{$gt:20}}}}", null);
+        assertThat(and.accept(bundle)).isTrue();
+        assertThat(and.accept(empty)).isFalse();
+    }
+
+    @Test
+    public void testIndexCandidates() throws Exception {
+        MetadataIndex index = new MetadataIndex();
+        index.update(Path.from("/a"), new ImmutableResourceMetadata.Builder().set("State", "ACTIVE").build());
+        index.update(Path.from("/b"), new ImmutableResourceMetadata.Builder().set("State", "RESOLVED")
+                .set("Name", "b").build());
+
+        assertThat(QueryPlanner.candidates(QueryPlans.compile("{State:\"ACTIVE\"}", null), index))
+                .containsOnly(Path.from("/a"));
+        assertThat(QueryPlanner.candidates(QueryPlans.compile("{{State:$exist},{Name:{$regexp:\"b\"}}}", null),
+                index)).containsOnly(Path.from("/a"), Path.from("/b"));
+        index.update(Path.from("/c"), new ImmutableResourceMetadata.Builder().set("Modified", 300L).build());
+        index.update(Path.from("/d"), new ImmutableResourceMetadata.Builder().set("Modified", 100L).build());
+        assertThat(QueryPlanner.candidates(QueryPlans.compile("{Modified:{$gt:200}}", null), index))
+                .containsOnly(Path.from("/c"));
+        assertThat(QueryPlanner.candidates(QueryPlans.compile("{Modified:{$lt:200}}", null), index))
+                .containsOnly(Path.from("/d"));
+        // Disjunctions are only answered if all their operands are
+        assertThat(QueryPlanner.candidates(ResourceFilters.or(ResourceFilters.keyExist("Name"),
+                ResourceFilters.regExp("State", "A")), index)).isNull();
+        assertThat(QueryPlanner.candidates(ResourceFilters.not(ResourceFilters.keyExist("Name")), index)).isNull();
+    }
+
+    private static Resource resource(final ResourceMetadata metadata) {
+        return new DefaultResource(Path.from("/test")) {
+            @Override
+            public ResourceMetadata getMetadata() {
+                return metadata;
+            }
+        };
+    }
+}
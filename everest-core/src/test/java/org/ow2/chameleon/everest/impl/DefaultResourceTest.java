@@ -1,7 +1,14 @@
 package org.ow2.chameleon.everest.impl;
 
 import org.junit.Test;
+import org.ow2.chameleon.everest.services.Action;
 import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Relation;
+import org.ow2.chameleon.everest.services.Resource;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -20,4 +27,112 @@ public class DefaultResourceTest {
         assertThat(res.adaptTo(Object.class)).isNull();
         assertThat(res.getResources()).isEmpty();
     }
+
+    @Test
+    public void testRelationsAreMemoized() {
+        DefaultResource res = new DefaultResource(Path.from("/foo"), null,
+                new DefaultResource(Path.from("/foo/a")), new DefaultResource(Path.from("/foo/b")));
+        List<Relation> first = res.getRelations();
+        List<Relation> second = res.getRelations();
+        // Self, parent and one relation per child.
+        assertThat(first).hasSize(4);
+        assertThat(second).isEqualTo(first);
+        assertThat(second.get(0)).isSameAs(first.get(0));
+        // The returned list is a copy the caller may modify.
+        first.clear();
+        assertThat(res.getRelations()).hasSize(4);
+    }
+
+    @Test
+    public void testSetRelationsInvalidatesRelations() {
+        DefaultResource res = new DefaultResource(Path.from("/foo"));
+        assertThat(res.getRelations()).hasSize(2);
+        res.setRelations(new DefaultRelation(Path.from("/bar"), Action.READ, "bar", "Get bar"));
+        assertThat(res.getRelations()).hasSize(3);
+        assertThat(res.getRelations().get(0).getName()).isEqualTo("bar");
+    }
+
+    @Test
+    public void testChildChangeInvalidatesRelations() {
+        final List<Resource> children = new ArrayList<Resource>();
+        final int[] listings = new int[1];
+        DefaultResource res = new DefaultResource(Path.from("/foo")) {
+            @Override
+            public List<Resource> getResources() {
+                listings[0]++;
+                return children;
+            }
+        };
+        assertThat(res.getRelations()).hasSize(2);
+        // The children are not listed again until the relations are invalidated.
+        children.add(new DefaultResource(Path.from("/foo/a")));
+        assertThat(res.getRelations()).hasSize(2);
+        assertThat(listings[0]).isEqualTo(1);
+
+        res.invalidateRelations();
+        assertThat(res.getRelations()).hasSize(3);
+        assertThat(listings[0]).isEqualTo(2);
+
+        // Creating or deleting a resource only invalidates the relations of its parent.
+        children.set(0, new DefaultResource(Path.from("/foo/b")));
+        DefaultResource.childrenChanged(Path.from("/bar"));
+        assertThat(res.getRelations().get(2).getHref()).isEqualTo(Path.from("/foo/a"));
+        assertThat(listings[0]).isEqualTo(2);
+        DefaultResource.childrenChanged(Path.from("/foo"));
+        assertThat(res.getRelations().get(2).getHref()).isEqualTo(Path.from("/foo/b"));
+        assertThat(res.getRelations()).hasSize(3);
+        assertThat(listings[0]).isEqualTo(3);
+    }
+
+    @Test
+    public void testGetResourceOnlyVisitsAncestors() {
+        final List<String> visited = new ArrayList<String>();
+        DefaultResource root = new TrackedResource("/", visited,
+                new TrackedResource("/a", visited, new TrackedResource("/a/x", visited)),
+                new TrackedResource("/b", visited, new TrackedResource("/b/y", visited)));
+        Resource found = root.getResource("/b/y");
+        assertThat(found).isNotNull();
+        assertThat(found.getPath().toString()).isEqualTo("/b/y");
+        assertThat(visited).containsExactly("/", "/b");
+        assertThat(root.getResource("/b/z")).isNull();
+        assertThat(root.getResource("/")).isSameAs(root);
+    }
+
+    @Test
+    public void testLazyDepthLimitedIteration() {
+        final List<String> visited = new ArrayList<String>();
+        DefaultResource root = new TrackedResource("/", visited,
+                new TrackedResource("/a", visited, new TrackedResource("/a/x", visited)),
+                new TrackedResource("/b", visited));
+        assertThat(root.all()).hasSize(4);
+
+        visited.clear();
+        Iterator<Resource> iterator = root.iterator(1);
+        assertThat(iterator.next()).isSameAs(root);
+        assertThat(visited).isEmpty();
+        assertThat(iterator.next().getPath().toString()).isEqualTo("/a");
+        assertThat(iterator.next().getPath().toString()).isEqualTo("/b");
+        assertThat(iterator.hasNext()).isFalse();
+        // The children of the resources at the maximum depth are never requested.
+        assertThat(visited).containsExactly("/");
+    }
+
+    /**
+     * A resource recording the calls to {@link #getResources()}.
+     */
+    private static class TrackedResource extends DefaultResource {
+
+        private final List<String> visited;
+
+        private TrackedResource(String path, List<String> visited, Resource... children) {
+            super(Path.from(path), null, children);
+            this.visited = visited;
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            visited.add(getPath().toString());
+            return super.getResources();
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.impl;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.chameleon.everest.core.Everest;
+import org.ow2.chameleon.everest.services.*;
+
+import java.util.concurrent.*;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the asynchronous processing of requests.
+ */
+public class TestAsyncProcessing {
+
+    private Everest everest;
+    private SlowResource slow;
+
+    @Before
+    public void setUp() {
+        everest = new Everest();
+        slow = new SlowResource();
+        everest.bindRootResource(slow);
+    }
+
+    @After
+    public void tearDown() {
+        everest.stop();
+    }
+
+    @Test
+    public void testProcessAsync() throws Exception {
+        Future<Resource> future = everest.processAsync(new DefaultRequest(Action.READ, Path.from("/slow"), null));
+        slow.release.countDown();
+        assertThat(future.get(10, TimeUnit.SECONDS).getPath().toString()).isEqualTo("/slow");
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        Future<Resource> future = everest.processAsync(new DefaultRequest(Action.READ, Path.from("/missing"), null));
+        try {
+            future.get();
+            Assert.fail("The resource should not be found");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(ResourceNotFoundException.class);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        Future<Resource> future = everest.processAsync(new DefaultRequest(Action.READ, Path.from("/slow"), null),
+                50, TimeUnit.MILLISECONDS);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("The request should have timed out");
+        } catch (CancellationException e) {
+            // Ok!
+        }
+        assertThat(future.isCancelled()).isTrue();
+        // The request thread has been interrupted.
+        assertThat(slow.interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testCustomExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            everest.setExecutor(executor);
+            slow.release.countDown();
+            Future<Resource> future = everest.processAsync(new DefaultRequest(Action.READ, Path.from("/slow"), null));
+            assertThat(future.get(10, TimeUnit.SECONDS)).isNotNull();
+            assertThat(slow.thread).isNotNull();
+            assertThat(slow.thread.getName()).doesNotMatch("everest-async-.*");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A resource blocking the read requests until released.
+     */
+    private static class SlowResource extends DefaultReadOnlyResource {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+        private volatile Thread thread;
+
+        private SlowResource() {
+            super(Path.from("/slow"));
+        }
+
+        @Override
+        public Resource process(Request request) throws IllegalActionOnResourceException, ResourceNotFoundException {
+            thread = Thread.currentThread();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return super.process(request);
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 OW2 Chameleon
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ow2.chameleon.everest.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.chameleon.everest.core.Everest;
+import org.ow2.chameleon.everest.services.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Test the batch processing of requests.
+ */
+public class TestBatchProcessing {
+
+    private Everest everest;
+    private Node root;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        everest = new Everest();
+        log = new ArrayList<String>();
+        root = new Node("/counting", log);
+        for (String group : new String[]{"group", "other"}) {
+            Node node = root.add(group);
+            for (int i = 0; i < 10; i++) {
+                node.add("child-" + i);
+            }
+        }
+        everest.bindRootResource(root);
+    }
+
+    @Test
+    public void testBatch() {
+        List<Request> requests = new ArrayList<Request>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new DefaultRequest(Action.READ, Path.from("/counting/group/child-" + i), null));
+        }
+        requests.add(new DefaultRequest(Action.READ, Path.from("/counting"), null));
+
+        List<RequestResult> results = everest.processBatch(requests);
+
+        assertThat(results).hasSize(11);
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).isSuccess()).isTrue();
+            assertThat(results.get(i).getRequest()).isSameAs(requests.get(i));
+            assertThat(results.get(i).getResource().getPath().toString())
+                    .isEqualTo(requests.get(i).path().toString());
+        }
+        // The tree has been walked down to the parent once for the 10 sibling requests, and not once per request.
+        assertThat(root.listings).isEqualTo(1);
+    }
+
+    @Test
+    public void testRequestsAreProcessedInOrder() {
+        List<Request> requests = Arrays.<Request>asList(
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-1"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting/other/child-1"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-2"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-3"), null)
+        );
+
+        everest.processBatch(requests);
+
+        assertThat(log).containsExactly("READ /counting/group/child-1", "READ /counting/other/child-1",
+                "READ /counting/group/child-2", "READ /counting", "READ /counting/group/child-3");
+    }
+
+    @Test
+    public void testReadsFollowingAMutationSeeIt() {
+        List<Request> requests = Arrays.<Request>asList(
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-1"), null),
+                new DefaultRequest(Action.DELETE, Path.from("/counting/group/child-1"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-1"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-2"), null)
+        );
+
+        List<RequestResult> results = everest.processBatch(requests);
+
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(1).isSuccess()).isTrue();
+        assertThat(results.get(2).getError()).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(results.get(3).isSuccess()).isTrue();
+        // The last two reads share the lookup of their parent, read after the deletion.
+        assertThat(log).containsExactly("READ /counting/group/child-1", "DELETE /counting/group/child-1",
+                "READ /counting/group", "READ /counting/group/child-2");
+    }
+
+    @Test
+    public void testErrorsAreReportedPerRequest() {
+        List<Request> requests = Arrays.<Request>asList(
+                new DefaultRequest(Action.READ, Path.from("/counting/group/child-1"), null),
+                new DefaultRequest(Action.READ, Path.from("/counting/group/missing"), null),
+                new DefaultRequest(Action.READ, Path.from("/missing"), null),
+                new DefaultRequest(Action.UPDATE, Path.from("/counting/group/child-2"), null)
+        );
+
+        List<RequestResult> results = everest.processBatch(requests);
+
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(1).isSuccess()).isFalse();
+        assertThat(results.get(1).getError()).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(results.get(1).getResource()).isNull();
+        assertThat(results.get(2).getError()).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(results.get(3).getError()).isInstanceOf(IllegalActionOnResourceException.class);
+    }
+
+    /**
+     * A resource logging the requests it handles, counting how many times its children are listed, and removed from
+     * its parent when deleted.
+     */
+    private static class Node extends DefaultResource {
+
+        private final List<Resource> children = new ArrayList<Resource>();
+        private final List<String> log;
+        private Node parent;
+        private int listings;
+
+        private Node(String path, List<String> log) {
+            super(Path.from(path));
+            this.log = log;
+        }
+
+        private Node add(String name) {
+            Node child = new Node(getPath().addElements(name).toString(), log);
+            child.parent = this;
+            children.add(child);
+            return child;
+        }
+
+        @Override
+        public List<Resource> getResources() {
+            listings++;
+            return children;
+        }
+
+        @Override
+        public Resource read(Request request) {
+            log.add("READ " + getPath());
+            return this;
+        }
+
+        @Override
+        public Resource delete(Request request) {
+            log.add("DELETE " + getPath());
+            parent.children.remove(this);
+            return this;
+        }
+
+        @Override
+        public Resource update(Request request) throws IllegalActionOnResourceException {
+            throw new IllegalActionOnResourceException(request, "Read only");
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ package org.ow2.chameleon.everest.impl;
 import org.ow2.chameleon.everest.core.Everest;
 import org.ow2.chameleon.everest.managers.everest.EverestRootResource;
 import org.ow2.chameleon.everest.services.*;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -70,5 +71,21 @@ public class TestEverestResourceManager {
         everest.process(request);
     }
 
+    @Test
+    public void testUnbindRootResource() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        assertThat(everest.getResources()).containsOnly(manager);
+        assertThat(everest.getEverestResources().keySet()).containsOnly(Path.from("/everest"));
+
+        everest.unbindRootResource(manager);
+        assertThat(everest.getResources()).isEmpty();
+        assertThat(everest.getEverestResources()).isEmpty();
+        try {
+            everest.process(new DefaultRequest(Action.READ, Path.from("/everest"), null));
+            Assert.fail("The everest domain should be gone");
+        } catch (ResourceNotFoundException e) {
+            // Ok!
+        }
+    }
+
 
 }
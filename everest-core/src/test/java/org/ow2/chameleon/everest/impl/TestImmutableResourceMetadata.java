@@ -18,9 +18,12 @@ package org.ow2.chameleon.everest.impl;
 import org.ow2.chameleon.everest.services.Action;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -129,4 +132,145 @@ public class TestImmutableResourceMetadata {
 
     }
 
+    @Test
+    public void testOfDoesNotCopyImmutableMetadata() {
+        ImmutableResourceMetadata irm = new ImmutableResourceMetadata.Builder().set("a", 1).build();
+        assertThat(ImmutableResourceMetadata.of(irm)).isSameAs(irm);
+        assertThat(new ImmutableResourceMetadata.Builder(irm).build()).isSameAs(irm);
+        assertThat(new ImmutableResourceMetadata.Builder().build()).isSameAs(ImmutableResourceMetadata.EMPTY);
+    }
+
+    @Test
+    public void testBuilderOverridesParent() {
+        ImmutableResourceMetadata parent = new ImmutableResourceMetadata.Builder()
+                .set("a", 1).set("b", 2).set("c", 3).set("d", 4)
+                .build();
+        ImmutableResourceMetadata child = new ImmutableResourceMetadata.Builder(parent)
+                .set("b", 20)
+                .set("e", 5)
+                .build();
+
+        // The parent is left untouched.
+        assertThat(parent.get("b")).isEqualTo(2);
+        assertThat(parent.containsKey("e")).isFalse();
+
+        assertThat(child.size()).isEqualTo(5);
+        assertThat(child.get("a")).isEqualTo(1);
+        assertThat(child.get("b")).isEqualTo(20);
+        assertThat(child.get("e", Integer.class)).isEqualTo(5);
+        assertThat(child.containsKey("d")).isTrue();
+        assertThat(new ArrayList<String>(child.keySet())).containsExactly("a", "b", "c", "d", "e");
+        assertThat(new ArrayList<Object>(child.values())).containsExactly(1, 20, 3, 4, 5);
+
+        // Layered metadata are equal to their flat counterpart.
+        Map<String, Object> expected = new LinkedHashMap<String, Object>(parent);
+        expected.put("b", 20);
+        expected.put("e", 5);
+        assertThat(child).isEqualTo(expected);
+        assertThat(child.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(ImmutableResourceMetadata.of(expected)).isEqualTo(child);
+
+        try {
+            child.entrySet().iterator().next().setValue(0);
+            fail("Cannot modify an entry");
+        } catch (UnsupportedOperationException e) { }
+    }
+
+    @Test
+    public void testDeepLayering() {
+        ImmutableResourceMetadata metadata = new ImmutableResourceMetadata.Builder()
+                .set("a", 0).set("b", 0).set("c", 0).set("d", 0)
+                .build();
+        for (int i = 1; i <= 10; i++) {
+            metadata = new ImmutableResourceMetadata.Builder(metadata).set("a", i).build();
+        }
+        assertThat(metadata.get("a")).isEqualTo(10);
+        assertThat(metadata.size()).isEqualTo(4);
+        assertThat(new ArrayList<String>(metadata.keySet())).containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    public void testKeyTablesAreShared() {
+        KeyTable first = KeyTable.of(new String[]{"name", "state", "priority"}, 3);
+        KeyTable second = KeyTable.of(new String[]{"name", "state", "priority", null}, 3);
+        assertThat(second).isSameAs(first);
+        assertThat(KeyTable.of(new String[]{"state", "name", "priority"}, 3)).isNotSameAs(first);
+        assertThat(first.indexOf("priority")).isEqualTo(2);
+        assertThat(first.indexOf("missing")).isEqualTo(-1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedKeyTablesAreEvicted() {
+        KeyTable used = KeyTable.of(new String[]{"id", "used"}, 2);
+        KeyTable dynamic = KeyTable.of(new String[]{"dynamic-0"}, 1);
+        for (int i = 1; i <= 2 * KeyTable.MAX_INTERNED_TABLES; i++) {
+            KeyTable.of(new String[]{"dynamic-" + i}, 1);
+            if (i % 100 == 0) {
+                assertThat(KeyTable.of(new String[]{"id", "used"}, 2)).isSameAs(used);
+            }
+        }
+        assertThat(KeyTable.of(new String[]{"id", "used"}, 2)).isSameAs(used);
+        assertThat(KeyTable.of(new String[]{"dynamic-0"}, 1)).isNotSameAs(dynamic);
+        // Evicted tables are interned again
+        dynamic = KeyTable.of(new String[]{"dynamic-0"}, 1);
+        assertThat(KeyTable.of(new String[]{"dynamic-0"}, 1)).isSameAs(dynamic);
+    }
+
+    @Test
+    public void testLargeMetadata() {
+        ImmutableResourceMetadata.Builder builder = new ImmutableResourceMetadata.Builder();
+        for (int i = 0; i < 100; i++) {
+            builder.set("key-" + i, i);
+        }
+        // Overriding an existing key keeps its position.
+        builder.set("key-50", "fifty");
+        ImmutableResourceMetadata irm = builder.build();
+        assertThat(irm.size()).isEqualTo(100);
+        assertThat(irm.get("key-99")).isEqualTo(99);
+        assertThat(irm.get("key-50")).isEqualTo("fifty");
+        assertThat(irm.get("key-100")).isNull();
+        assertThat(new ArrayList<String>(irm.keySet()).get(50)).isEqualTo("key-50");
+    }
+
+    @Test
+    public void testLazyValues() {
+        final AtomicInteger computations = new AtomicInteger();
+        ImmutableResourceMetadata irm = new ImmutableResourceMetadata.Builder()
+                .set("eager", 1)
+                .set("lazy", new ImmutableResourceMetadata.Lazy<String>() {
+                    @Override
+                    protected String compute() {
+                        computations.incrementAndGet();
+                        return "computed";
+                    }
+                })
+                .build();
+
+        assertThat(irm.get("eager")).isEqualTo(1);
+        assertThat(irm.containsKey("lazy")).isTrue();
+        assertThat(irm.size()).isEqualTo(2);
+        assertThat(computations.get()).isEqualTo(0);
+
+        assertThat(irm.get("lazy", String.class)).isEqualTo("computed");
+        assertThat(irm.get("lazy")).isEqualTo("computed");
+        assertThat(new ArrayList<Object>(irm.values())).containsExactly(1, "computed");
+        assertThat(computations.get()).isEqualTo(1);
+
+        // Extending lazy metadata does not compute them.
+        ImmutableResourceMetadata.Builder builder = new ImmutableResourceMetadata.Builder();
+        builder.set("lazy", new ImmutableResourceMetadata.Lazy<String>() {
+            @Override
+            protected String compute() {
+                computations.incrementAndGet();
+                return "other";
+            }
+        });
+        ImmutableResourceMetadata extended = new ImmutableResourceMetadata.Builder(builder.build())
+                .set("a", 1).set("b", 2)
+                .build();
+        assertThat(computations.get()).isEqualTo(1);
+        assertThat(extended.get("lazy")).isEqualTo("other");
+        assertThat(computations.get()).isEqualTo(2);
+    }
+
 }
@@ -24,7 +24,11 @@ import org.ow2.chameleon.everest.services.Action;
 import org.ow2.chameleon.everest.services.Path;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Test the ability to transform a json string to a bean
@@ -88,4 +92,41 @@ public class TestParameterToBeanSupport {
         assertThat(bean.getBean().getNames()).contains("a").contains("b").contains("c");
 
     }
+
+    @Test
+    public void testBeanIsBuiltOnce() {
+        ObjectNode node = objectMapper
+                .createObjectNode()
+                .put("message", "a message")
+                .put("count", 1);
+
+        DefaultRequest request = new DefaultRequest(
+                Action.READ,
+                Path.from("/foo"),
+                new ImmutableMap.Builder<String, String>()
+                        .put("test",
+                                node.toString()).build()
+        );
+
+        MyBean bean = request.get("test", MyBean.class);
+        assertThat(request.get("test", MyBean.class)).isSameAs(bean);
+        // The raw value is still available.
+        assertThat(request.get("test", String.class)).isEqualTo(node.toString());
+    }
+
+    @Test
+    public void testParametersAreAnImmutableSnapshot() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("a", 1);
+        DefaultRequest request = new DefaultRequest(Action.UPDATE, Path.from("/foo"), params);
+        params.put("b", 2);
+
+        assertThat(request.parameters()).isSameAs(request.parameters());
+        assertThat(request.parameters().size()).isEqualTo(1);
+        assertThat(request.parameters().get("a")).isEqualTo(1);
+        try {
+            request.parameters().clear();
+            fail("Parameters are immutable");
+        } catch (UnsupportedOperationException e) { }
+    }
 }
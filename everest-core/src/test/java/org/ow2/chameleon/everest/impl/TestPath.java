@@ -268,4 +268,40 @@ public class TestPath {
         assertThat(paths).isEqualTo(Arrays.asList(new Path[] {from("/"), from("/a/b/c"), from("/abc"), from("/abc/def"), from("/abc/def/ghi"), from("/abc/xyz"), from("/abc/xyz/ghi")}));
     }
 
+    @Test
+    public void testViewsBehaveLikeParsedPaths() {
+        Path path = from("/abc/def/ghi");
+        List<Path> views = Arrays.asList(path.getHead(2), path.getTail(2), path.getParent(), path.subtract(from("/abc")),
+                from("/abc").add(from("/def/ghi")), from("/abc").addElements("def"));
+        for (Path view : views) {
+            Path parsed = from(view.toString());
+            assertThat((Object) view).isEqualTo(parsed);
+            assertThat((Object) parsed).isEqualTo(view);
+            assertThat(view.hashCode()).isEqualTo(parsed.hashCode()).isEqualTo(view.toString().hashCode());
+            assertThat(view.getElements()).isEqualTo(parsed.getElements());
+            assertThat(view.compareTo(parsed)).isEqualTo(0);
+        }
+        assertThat((Object) path.getTail(2).getHead(1)).isEqualTo(from("/def"));
+        assertThat(path.getTail(2).getFirst()).isEqualTo("def");
+        assertThat(path.getHead(2).getLast()).isEqualTo("def");
+        assertThat(from("/").hashCode()).isEqualTo("/".hashCode());
+    }
+
+    @Test
+    public void testInterning() {
+        assertThat((Object) from("/abc/def")).isSameAs(from(new String("/abc/def")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorIsReadOnly() {
+        Iterator<String> i = from("/abc").iterator();
+        i.next();
+        i.remove();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromLeadingDoubleSlashPath() {
+        from("//a");
+    }
+
 }
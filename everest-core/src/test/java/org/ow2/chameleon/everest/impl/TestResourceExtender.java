@@ -56,6 +56,75 @@ public class TestResourceExtender {
         assertThat(resource.getMetadata().get("extended", Boolean.class)).isNull();
     }
 
+    @Test
+    public void testScopedExtender() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        EverestRootResource root = new EverestRootResource(everest);
+        everest.bindRootResource(root);
+        MyScopedResourceExtender extender = new MyScopedResourceExtender(Path.from("/everest/domains"), null);
+        everest.bindExtender(extender);
+
+        // Within the scope
+        Resource resource = everest.process(new DefaultRequest(Action.READ, Path.from("/everest/domains/everest"),
+                null));
+        assertThat(resource.getMetadata().get("extended", Boolean.class)).isEqualTo(true);
+
+        // Outside the scope, the filter is not even evaluated.
+        extender.evaluations = 0;
+        resource = everest.process(new DefaultRequest(Action.READ, Path.from("/everest"), null));
+        assertThat(resource.getMetadata().get("extended", Boolean.class)).isNull();
+        assertThat(extender.evaluations).isEqualTo(0);
+    }
+
+    @Test
+    public void testTypeScopedExtender() throws ResourceNotFoundException, IllegalActionOnResourceException {
+        EverestRootResource root = new EverestRootResource(everest);
+        everest.bindRootResource(root);
+        MyScopedResourceExtender extender = new MyScopedResourceExtender(null, EverestRootResource.class);
+        everest.bindExtender(extender);
+
+        Resource resource = everest.process(new DefaultRequest(Action.READ, Path.from("/everest"), null));
+        assertThat(resource.getMetadata().get("extended", Boolean.class)).isEqualTo(true);
+
+        extender.evaluations = 0;
+        resource = everest.process(new DefaultRequest(Action.READ, Path.from("/everest/domains/everest"), null));
+        assertThat(resource.getMetadata().get("extended", Boolean.class)).isNull();
+        assertThat(extender.evaluations).isEqualTo(0);
+
+        everest.unbindExtender(extender);
+        resource = everest.process(new DefaultRequest(Action.READ, Path.from("/everest"), null));
+        assertThat(resource.getMetadata().get("extended", Boolean.class)).isNull();
+    }
+
+    private class MyScopedResourceExtender extends MyResourceExtender implements ScopedResourceExtender {
+
+        private final Path scope;
+        private final Class<? extends Resource> type;
+        private int evaluations;
+
+        private MyScopedResourceExtender(Path scope, Class<? extends Resource> type) {
+            this.scope = scope;
+            this.type = type;
+        }
+
+        public Path getScope() {
+            return scope;
+        }
+
+        public Class<? extends Resource> getResourceType() {
+            return type;
+        }
+
+        @Override
+        public ResourceFilter getFilter() {
+            return new ResourceFilter() {
+                public boolean accept(Resource resource) {
+                    evaluations++;
+                    return true;
+                }
+            };
+        }
+    }
+
     private class MyResourceExtender implements ResourceExtender {
 
         public ResourceFilter getFilter() {
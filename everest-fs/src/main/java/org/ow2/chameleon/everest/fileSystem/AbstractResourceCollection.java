@@ -125,11 +125,13 @@ public abstract class AbstractResourceCollection extends DefaultReadOnlyResource
         if (isDirectory) {
             DirectoryResource tempDirectory = new DirectoryResource(rel.getFirst(), getPath(), subResource,this);
             m_subDirectoryResource.add(tempDirectory);
+            invalidateRelations();
             return m_subDirectoryResource.get(m_subDirectoryResource.size() - 1).process(request);
         } else {
 
             FileResource tempFile = new FileResource(rel.getFirst(), getPath(), subResource,this);
             m_subFileResource.add(tempFile);
+            invalidateRelations();
             return m_subFileResource.get(m_subFileResource.size() - 1).process(request);
 
         }
@@ -159,10 +161,12 @@ public abstract class AbstractResourceCollection extends DefaultReadOnlyResource
 
     public void deleteSubFile(FileResource fileResource){
         m_subFileResource.remove(fileResource);
+        invalidateRelations();
     }
 
     public void deleteSubDirectory(DirectoryResource fileResource){
         m_subDirectoryResource.remove(fileResource);
+        invalidateRelations();
     }
 
 
@@ -246,6 +250,7 @@ public abstract class AbstractResourceCollection extends DefaultReadOnlyResource
                         if (file.createNewFile()) {
                             FileResource fileResource = new FileResource(name, getPath(), file,this);
                             m_subFileResource.add(fileResource);
+                            invalidateRelations();
                             return fileResource;
                         } else {
                             return null;
@@ -262,6 +267,7 @@ public abstract class AbstractResourceCollection extends DefaultReadOnlyResource
                     if (file.mkdir()) {
                         DirectoryResource directoryResource = new DirectoryResource(name, getPath(), file,this);
                         m_subDirectoryResource.add(directoryResource);
+                        invalidateRelations();
                         return directoryResource;
                     } else {
                         return null;
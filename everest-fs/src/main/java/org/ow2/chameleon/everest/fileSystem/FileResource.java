@@ -32,7 +32,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
@@ -103,19 +102,42 @@ public class FileResource extends DefaultResource {
 
         metadataBuilder.set("hidden", m_representedFile.isHidden());
 
-        try {
-            // check if the file contains the bundle with correct manifest
-            JarFile jarFile = new JarFile(m_representedFile);
-            Manifest manifest = jarFile.getManifest();
-            Attributes mainAttributes = manifest.getMainAttributes();
-            metadataBuilder.set("manifest",manifest);
-        }catch (Exception e) {
+        if (m_representedFile.isFile()) {
+            // Any file may be a jar (.war, .zip, bundles without extension). Opening it is expensive, so it is only
+            // done if the manifest is read: the key is set for every file, its value is null if there is no manifest.
+            metadataBuilder.set("manifest", new ImmutableResourceMetadata.Lazy<Manifest>() {
+                @Override
+                protected Manifest compute() {
+                    return getManifest();
+                }
+            });
         }
         return metadataBuilder.build();
 
 
     }
 
+    /**
+     * @return the manifest of the represented file, {@literal null} if it is not a jar file or has no manifest
+     */
+    private Manifest getManifest() {
+        JarFile jarFile = null;
+        try {
+            jarFile = new JarFile(m_representedFile);
+            return jarFile.getManifest();
+        } catch (Exception e) {
+            return null;
+        } finally {
+            if (jarFile != null) {
+                try {
+                    jarFile.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
     @Override
     public Resource update(Request request) {
         Map<String, ?> newMap = request.parameters();
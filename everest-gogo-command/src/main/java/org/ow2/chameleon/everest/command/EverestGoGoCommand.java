@@ -26,7 +26,7 @@ import org.apache.felix.service.command.Descriptor;
 import org.ow2.chameleon.everest.client.EverestClient;
 import org.ow2.chameleon.everest.client.ListResourceContainer;
 import org.ow2.chameleon.everest.client.ResourceContainer;
-import org.ow2.chameleon.everest.query.QueryFilter;
+import org.ow2.chameleon.everest.query.QueryPlans;
 import org.ow2.chameleon.everest.services.*;
 
 import java.util.List;
@@ -338,8 +338,7 @@ public class EverestGoGoCommand {
             return;
         }
         try{
-            QueryFilter parserQuery = new QueryFilter(request,m_everestClient.getM_everest());
-            ResourceFilter resourceFilter = parserQuery.input();
+            ResourceFilter resourceFilter = QueryPlans.compile(request, m_everestClient.getM_everest());
             ListResourceContainer filterResourceList = listResourceContainer.filter(resourceFilter);
             printResource(filterResourceList);
             session.put(LISTRESOURCE,filterResourceList);
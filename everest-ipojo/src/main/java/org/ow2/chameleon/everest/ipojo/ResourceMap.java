@@ -132,6 +132,7 @@ public class ResourceMap extends DefaultReadOnlyResource {
             m_children.put(child.getPath(), child);
             m_relations.put(child.getPath(), relation);
             m_relationNames.add(relationName);
+            invalidateRelations();
         } finally {
             m_lock.writeLock().unlock();
         }
@@ -177,6 +178,7 @@ public class ResourceMap extends DefaultReadOnlyResource {
             }
             m_children.remove(resource.getPath());
             m_relationNames.remove(m_relations.remove(resource.getPath()).getName());
+            invalidateRelations();
 
         } finally {
             m_lock.writeLock().unlock();
@@ -198,6 +200,7 @@ public class ResourceMap extends DefaultReadOnlyResource {
                 throw new IllegalArgumentException("path not present");
             }
             m_relationNames.remove(m_relations.remove(path).getName());
+            invalidateRelations();
             return m_children.remove(path);
         } finally {
             m_lock.writeLock().unlock();
@@ -226,6 +229,7 @@ public class ResourceMap extends DefaultReadOnlyResource {
             }
             m_children.remove(path);
             m_relationNames.remove(m_relations.remove(path).getName());
+            invalidateRelations();
             return type.cast(r);
         } finally {
             m_lock.writeLock().unlock();
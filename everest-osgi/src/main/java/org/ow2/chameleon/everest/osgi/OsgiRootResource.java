@@ -273,10 +273,19 @@ public class OsgiRootResource extends AbstractResourceManager implements BundleT
     @Override
     public ResourceMetadata getMetadata() {
         ImmutableResourceMetadata.Builder metadataBuilder = new ImmutableResourceMetadata.Builder(m_metadata);
-        // add Start Level metadata
-        FrameworkStartLevel frameworkStartLevel = m_frameworkBundle.adapt(FrameworkStartLevel.class);
-        metadataBuilder.set(STARTLEVEL_BUNDLE_PARAMETER, frameworkStartLevel.getInitialBundleStartLevel());
-        metadataBuilder.set(STARTLEVEL_PARAMETER, frameworkStartLevel.getStartLevel());
+        // add Start Level metadata, only adapting the framework if they are read
+        metadataBuilder.set(STARTLEVEL_BUNDLE_PARAMETER, new ImmutableResourceMetadata.Lazy<Integer>() {
+            @Override
+            protected Integer compute() {
+                return m_frameworkBundle.adapt(FrameworkStartLevel.class).getInitialBundleStartLevel();
+            }
+        });
+        metadataBuilder.set(STARTLEVEL_PARAMETER, new ImmutableResourceMetadata.Lazy<Integer>() {
+            @Override
+            protected Integer compute() {
+                return m_frameworkBundle.adapt(FrameworkStartLevel.class).getStartLevel();
+            }
+        });
         return metadataBuilder.build();
     }
 
@@ -20,6 +20,7 @@ import org.ow2.chameleon.everest.osgi.AbstractResourceCollection;
 import org.ow2.chameleon.everest.osgi.service.ServiceResourceManager;
 import org.ow2.chameleon.everest.services.IllegalResourceException;
 import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Relation;
 import org.ow2.chameleon.everest.services.Resource;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceReference;
@@ -64,6 +65,13 @@ public class BundleServicesResource extends AbstractResourceCollection {
         m_bundle = bundle;
     }
 
+    @Override
+    public List<Relation> getRelations() {
+        // The children come and go with the services registered and used by the bundle
+        invalidateRelations();
+        return super.getRelations();
+    }
+
     @Override
     public List<Resource> getResources() {
         ArrayList<Resource> resources = new ArrayList<Resource>();
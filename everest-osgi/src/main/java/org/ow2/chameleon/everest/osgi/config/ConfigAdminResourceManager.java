@@ -197,6 +197,7 @@ public class ConfigAdminResourceManager extends AbstractResourceCollection {
         synchronized (m_configurationResourceMap) {
             m_configurationResourceMap.put(pid, configurationResource);
         }
+        invalidateRelations();
         return configurationResource;
     }
 
@@ -225,7 +226,7 @@ public class ConfigAdminResourceManager extends AbstractResourceCollection {
                         resourceEvent = ResourceEvent.DELETED;
                     }
                 }
-                Everest.postResource(ResourceEvent.UPDATED, configurationResource);
+                Everest.postResource(resourceEvent, configurationResource);
             } catch (IOException e) {
                 // something gone wrong
                 //TODO
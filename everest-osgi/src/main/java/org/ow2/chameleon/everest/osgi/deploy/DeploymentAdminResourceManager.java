@@ -100,6 +100,13 @@ public class DeploymentAdminResourceManager extends AbstractResourceCollection {
         return metadataBuilder.build();
     }
 
+    @Override
+    public List<Relation> getRelations() {
+        // Deployment packages may be installed or removed directly through the deployment admin, without event
+        invalidateRelations();
+        return super.getRelations();
+    }
+
     @Override
     public List<Resource> getResources() {
         ArrayList<Resource> resources = new ArrayList<Resource>();
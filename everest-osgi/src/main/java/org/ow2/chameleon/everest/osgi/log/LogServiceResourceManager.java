@@ -17,6 +17,7 @@ package org.ow2.chameleon.everest.osgi.log;
 
 import org.ow2.chameleon.everest.osgi.AbstractResourceCollection;
 import org.ow2.chameleon.everest.services.Path;
+import org.ow2.chameleon.everest.services.Relation;
 import org.ow2.chameleon.everest.services.Resource;
 import org.osgi.service.log.LogEntry;
 import org.osgi.service.log.LogReaderService;
@@ -57,6 +58,13 @@ public class LogServiceResourceManager extends AbstractResourceCollection {
         m_logService = logService;
     }
 
+    @Override
+    public List<Relation> getRelations() {
+        // The log service adds entries without notice
+        invalidateRelations();
+        return super.getRelations();
+    }
+
     @Override
     public List<Resource> getResources() {
         ArrayList<Resource> resources = new ArrayList<Resource>();
@@ -115,6 +115,13 @@ public class ServiceResource extends AbstractResourceCollection {
         return metadataBuilder.build();
     }
 
+    @Override
+    public List<Relation> getRelations() {
+        // The "uses" child comes and goes with the bundles using the service
+        invalidateRelations();
+        return super.getRelations();
+    }
+
     @Override
     public List<Resource> getResources() {
         ArrayList<Resource> resources = new ArrayList<Resource>();
@@ -15,6 +15,8 @@
 
 package org.ow2.chameleon.everest.servlet;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.felix.ipojo.annotations.*;
 import org.ow2.chameleon.everest.impl.DefaultRequest;
@@ -26,11 +28,9 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 
 import static org.ow2.chameleon.everest.servlet.HttpUtils.*;
 
@@ -49,6 +49,11 @@ public class EverestServlet extends HttpServlet {
 
     public static final String EVEREST_SERVLET_PATH = "/everest";
 
+    /**
+     * The path (relative to the servlet) where batches of requests are posted.
+     */
+    public static final String BATCH_PATH = "/_batch";
+
     @Requires
     private EverestService everest;
 
@@ -72,6 +77,11 @@ public class EverestServlet extends HttpServlet {
             //End Trace
         }
 
+        if (isPost(req) && BATCH_PATH.equals(req.getPathInfo())) {
+            batch(req, resp);
+            return;
+        }
+
         // Translate request
         DefaultRequest request = translate(req);
         if (request == null) {
@@ -116,6 +126,92 @@ public class EverestServlet extends HttpServlet {
         result.wrap(resp);
     }
 
+    /**
+     * Processes a batch of requests, posted as a JSON array of {@code {"action": ..., "path": ..., "params": {...}}}
+     * objects. The response is a JSON array holding the result of each request, in order.
+     *
+     * @param req  the HTTP request
+     * @param resp the HTTP response
+     */
+    private void batch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        List<Request> requests;
+        try {
+            requests = translateBatch(JsonUtils.get().parse(read(req)));
+        } catch (RuntimeException e) {
+            ObjectNode node = JsonUtils.get().newObject();
+            node.put("error", "The batch cannot be translated to Everest");
+            node.put("message", e.getMessage());
+            notimplemented(node).wrap(resp);
+            return;
+        }
+
+        ArrayNode array = JsonUtils.get(req).getMapper().createArrayNode();
+        for (RequestResult result : everest.processBatch(requests)) {
+            Request request = result.getRequest();
+            ObjectNode node = JsonUtils.get(req).newObject();
+            node.put("path", request.path().toString());
+            node.put("action", request.action().toString());
+            if (result.isSuccess()) {
+                node.put("status", request.action() == Action.CREATE ? CREATED : OK);
+                node.put("resource", toJSON(req, result.getResource()));
+            } else if (result.getError() instanceof ResourceNotFoundException) {
+                node.put("status", NOT_FOUND);
+                node.put("error", "resource not found");
+                node.put("message", result.getError().getMessage());
+            } else if (result.getError() instanceof IllegalActionOnResourceException) {
+                node.put("status", NOT_ALLOWED);
+                node.put("error", "illegal action on resource");
+                node.put("message", result.getError().getMessage());
+            } else {
+                node.put("status", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                node.put("error", result.getError().toString());
+                node.put("message", result.getError().getMessage());
+            }
+            array.add(node);
+        }
+        ok(array).wrap(resp);
+    }
+
+    private static String read(HttpServletRequest req) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        BufferedReader reader = req.getReader();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Translates a JSON batch to Everest requests.
+     *
+     * @param batch the JSON array of requests
+     * @return the Everest requests
+     * @throws IllegalArgumentException if the batch is malformed
+     */
+    public static List<Request> translateBatch(JsonNode batch) {
+        if (batch == null || !batch.isArray()) {
+            throw new IllegalArgumentException("A batch must be a JSON array");
+        }
+        List<Request> requests = new ArrayList<Request>(batch.size());
+        for (JsonNode node : batch) {
+            JsonNode path = node.get("path");
+            if (path == null || !path.isTextual()) {
+                throw new IllegalArgumentException("Missing path in batched request " + node);
+            }
+            JsonNode action = node.get("action");
+            JsonNode params = node.get("params");
+            Map<String, ?> map = null;
+            if (params != null && !params.isNull()) {
+                map = JsonUtils.get().fromJson(params, Map.class);
+            }
+            requests.add(new DefaultRequest(action == null ? Action.READ : Action.valueOf(action.asText().toUpperCase()),
+                    Path.from(path.asText()), map));
+        }
+        return requests;
+    }
+
     /**
      * Computes the HTTP url of the given path.
      * The url is computed thanks to the request.
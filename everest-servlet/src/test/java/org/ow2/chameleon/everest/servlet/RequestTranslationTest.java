@@ -18,6 +18,7 @@ package org.ow2.chameleon.everest.servlet;
 import com.google.common.collect.ImmutableMap;
 import org.ow2.chameleon.everest.impl.DefaultRequest;
 import org.ow2.chameleon.everest.services.Action;
+import org.ow2.chameleon.everest.services.Request;
 import org.junit.Test;
 
 import javax.servlet.http.HttpServletRequest;
@@ -122,4 +123,24 @@ public class RequestTranslationTest {
 
     }
 
+    @Test
+    public void testBatchTranslation() {
+        List<Request> requests = EverestServlet.translateBatch(JsonUtils.get().parse("[" +
+                "{\"path\": \"/osgi/bundles/1\"}," +
+                "{\"action\": \"update\", \"path\": \"/osgi/bundles/2\", \"params\": {\"state\": \"ACTIVE\"}}" +
+                "]"));
+
+        assertThat(requests).hasSize(2);
+        assertThat(requests.get(0).action()).isEqualTo(Action.READ);
+        assertThat(requests.get(0).path().toString()).isEqualTo("/osgi/bundles/1");
+        assertThat(requests.get(1).action()).isEqualTo(Action.UPDATE);
+        assertThat(requests.get(1).path().toString()).isEqualTo("/osgi/bundles/2");
+        assertThat(requests.get(1).get("state", String.class)).isEqualTo("ACTIVE");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedBatchTranslation() {
+        EverestServlet.translateBatch(JsonUtils.get().parse("{\"path\": \"/osgi\"}"));
+    }
+
 }
@@ -88,20 +88,24 @@ public class ThreadManagerResource extends DefaultReadOnlyResource {
 
     }
 
+    @Override
+    public List<Relation> getRelations() {
+        // Threads come and go without notice, the relations to them cannot be kept
+        invalidateRelations();
+        return super.getRelations();
+    }
+
     public ThreadMXBean getBean() {
         return m_threadMXBean;
     }
 
-    public List<Relation> getRelations() {
-        List<Relation> relations = new ArrayList<Relation>();
-        relations.addAll(super.getRelations());
-        for (Resource resource : getResources()) {
-            int size = getCanonicalPath().getCount();
-            String name = resource.getCanonicalPath().getElements()[size];
-            relations.add(new DefaultRelation(resource.getCanonicalPath(), Action.READ, getCanonicalPath().getLast() + ":" + name,
-                    "Get " + name));
-        }
-        return relations;
+    @Override
+    protected void addChildRelations(Resource child, List<Relation> relations) {
+        super.addChildRelations(child, relations);
+        int size = getCanonicalPath().getCount();
+        String name = child.getCanonicalPath().getElement(size);
+        relations.add(new DefaultRelation(child.getCanonicalPath(), Action.READ, getCanonicalPath().getLast() + ":" + name,
+                "Get " + name));
     }
 
 }
@@ -47,13 +47,23 @@ public class ThreadResource extends DefaultReadOnlyResource {
         ImmutableResourceMetadata.Builder metadataBuilder = new ImmutableResourceMetadata.Builder();
         metadataBuilder.set("Thread-Ids", m_ids);
         metadataBuilder.set("Thread-Name", threadInfo.getThreadName());
-        metadataBuilder.set("Thread-User-Time", m_parentManager.getBean().getThreadUserTime(m_ids));
-        metadataBuilder.set("CPU-Time", m_parentManager.getBean().getThreadCpuTime(m_ids));
+        // Measuring the thread times may be expensive, only do it if they are read
+        metadataBuilder.set("Thread-User-Time", new ImmutableResourceMetadata.Lazy<Long>() {
+            @Override
+            protected Long compute() {
+                return m_parentManager.getBean().getThreadUserTime(m_ids);
+            }
+        });
+        metadataBuilder.set("CPU-Time", new ImmutableResourceMetadata.Lazy<Long>() {
+            @Override
+            protected Long compute() {
+                return m_parentManager.getBean().getThreadCpuTime(m_ids);
+            }
+        });
         metadataBuilder.set("Block-Count", threadInfo.getBlockedCount());
         metadataBuilder.set("Block-Time", threadInfo.getBlockedTime());
         metadataBuilder.set("Lock-Name", threadInfo.getLockName());
         metadataBuilder.set("Lock-Owner-Id", threadInfo.getLockOwnerId());
-        metadataBuilder.set("Thread-Name", threadInfo.getThreadName());
         metadataBuilder.set("Thread-State", threadInfo.getThreadState());
         metadataBuilder.set("Waited-Time", threadInfo.getWaitedTime());
         return metadataBuilder.build();